@@ -0,0 +1,198 @@
+package hudson.plugins.plot;
+
+import com.opencsv.CSVWriter;
+import hudson.Extension;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores the plot data in the CSV file named by {@link Plot#getCsvFileName()}
+ * in the job's root directory. The file starts with 2 header lines followed by
+ * one line per record.
+ */
+@Extension
+public class CSVPlotStore extends PlotStore {
+    private static final Logger LOGGER = Logger.getLogger(CSVPlotStore.class.getName());
+
+    static final String ID = "csv";
+
+    /**
+     * The encoding of the CSV files: the default encoding of the controller,
+     * which existing plot files were always written with.
+     */
+    static final Charset CHARSET = Charset.defaultCharset();
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    /**
+     * Appends the records to the CSV file. The header lines are only written
+     * when the file does not exist yet, so the cost of recording a build does
+     * not depend on the size of the plot history.
+     */
+    @Override
+    public void append(Plot plot, PlotData records) throws IOException {
+        File plotFile = getFile(plot);
+        boolean writeHeader = plotFile.length() == 0;
+        if (records.isEmpty() && !writeHeader) {
+            return;
+        }
+        try (CSVWriter writer = new CSVWriter(new OutputStreamWriter(
+                new FileOutputStream(plotFile, true), CHARSET))) {
+            if (writeHeader) {
+                writeHeader(plot, writer);
+            }
+            for (int i = 0; i < records.size(); i++) {
+                writer.writeNext(records.toRecord(i));
+            }
+        } finally {
+            changed(plot);
+        }
+    }
+
+    @Override
+    public PlotData read(Plot plot, int fromBuild, int toBuild, Set<String> series)
+            throws IOException {
+        PlotData records = new PlotData();
+        File plotFile = getFile(plot);
+        if (!plotFile.exists()) {
+            return records;
+        }
+        try (CSVTokenizer tokenizer = new CSVTokenizer(new InputStreamReader(
+                new FileInputStream(plotFile), CHARSET))) {
+            // throw away 2 header lines
+            tokenizer.next();
+            tokenizer.next();
+            while (tokenizer.next()) {
+                int buildNumber;
+                long timestamp;
+                try {
+                    buildNumber = tokenizer.getInt(2);
+                    timestamp = tokenizer.getLong(3);
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    LOGGER.log(Level.SEVERE, "Skipping malformed plot record", e);
+                    continue;
+                }
+                if (buildNumber < fromBuild || buildNumber > toBuild) {
+                    continue;
+                }
+                String label = tokenizer.get(1);
+                if (series != null && !series.contains(label)) {
+                    continue;
+                }
+                String url = tokenizer.size() >= 5 ? tokenizer.get(4) : null;
+                try {
+                    records.add(tokenizer.getDouble(0), label, buildNumber, timestamp, url);
+                } catch (NumberFormatException e) {
+                    // keep the text of values that aren't numbers
+                    records.add(tokenizer.get(0), label, buildNumber, timestamp, url);
+                }
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public int getOldestBuild(Plot plot) throws IOException {
+        File plotFile = getFile(plot);
+        if (!plotFile.exists()) {
+            return -1;
+        }
+        try (CSVTokenizer tokenizer = new CSVTokenizer(new InputStreamReader(
+                new FileInputStream(plotFile), CHARSET))) {
+            // throw away 2 header lines
+            tokenizer.next();
+            tokenizer.next();
+            return tokenizer.next() ? tokenizer.getInt(2) : -1;
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Invalid plot file " + plotFile, e);
+        }
+    }
+
+    /**
+     * Rewrites the CSV file, dropping the records of builds that are not
+     * retained. The file is streamed record by record into a temporary file
+     * which then replaces the original, so memory use does not depend on the
+     * size of the plot history. The original is kept, along with its last
+     * modification time, when no record is dropped and the title is the same.
+     */
+    @Override
+    public void retain(Plot plot, IntPredicate builds) throws IOException {
+        File plotFile = getFile(plot);
+        if (!plotFile.exists()) {
+            return;
+        }
+        File tmpFile = new File(plotFile.getPath() + ".tmp");
+        try {
+            boolean changed;
+            try (CSVTokenizer tokenizer = new CSVTokenizer(new InputStreamReader(
+                    new FileInputStream(plotFile), CHARSET));
+                 CSVWriter writer = new CSVWriter(new OutputStreamWriter(
+                         new FileOutputStream(tmpFile), CHARSET))) {
+                // replace the 2 header lines, the title may have changed
+                changed = !tokenizer.next() || tokenizer.size() < 2
+                        || !tokenizer.get(1).equals(Objects.toString(plot.getTitle(), ""));
+                tokenizer.next();
+                writeHeader(plot, writer);
+                while (tokenizer.next()) {
+                    try {
+                        if (builds.test(tokenizer.getInt(2))) {
+                            writer.writeNext(tokenizer.toArray());
+                            continue;
+                        }
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        LOGGER.log(Level.SEVERE, "Dropping malformed plot record", e);
+                    }
+                    changed = true;
+                }
+            }
+            if (changed) {
+                Files.move(tmpFile.toPath(), plotFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                changed(plot);
+            }
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    @Override
+    public long getVersion(Plot plot) {
+        return getFileVersion(plot, getFile(plot));
+    }
+
+    File getFile(Plot plot) {
+        return new File(plot.getJob().getRootDir(), plot.getCsvFileName());
+    }
+
+    /**
+     * Writes the 2 header lines of the CSV file.
+     */
+    private static void writeHeader(Plot plot, CSVWriter writer) {
+        String[] header1 = new String[]{
+                Messages.Plot_Title(),
+                plot.getTitle()
+        };
+        String[] header2 = new String[]{
+                Messages.Plot_Value(),
+                Messages.Plot_SeriesLabel(), Messages.Plot_BuildNumber(),
+                Messages.Plot_BuildDate(), Messages.Plot_URL()
+        };
+        writer.writeNext(header1);
+        writer.writeNext(header2);
+    }
+}
@@ -5,8 +5,6 @@
  */
 package hudson.plugins.plot;
 
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvValidationException;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.FilePath;
@@ -25,6 +23,7 @@ import java.io.PrintStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -32,6 +31,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Represents a plot data series configuration from an CSV file.
@@ -39,6 +39,7 @@ import java.util.regex.Pattern;
  * @author Allen Reese
  */
 public class CSVSeries extends Series {
+    private static final long serialVersionUID = 1L;
     private static final transient Logger LOGGER = Logger.getLogger(CSVSeries.class.getName());
     // Debugging hack, so I don't have to change FINE/INFO...
     private static final transient Level DEFAULT_LOG_LEVEL = Level.FINEST;
@@ -84,6 +85,11 @@ public class CSVSeries extends Series {
      */
     private boolean displayTableFlag;
 
+    /**
+     * The valid regular expressions of strExclusionSet, compiled on first use.
+     */
+    private transient volatile List<Pattern> exclusionPatterns;
+
     @DataBoundConstructor
     public CSVSeries(String file, String url, String inclusionFlag,
                      String exclusionValues, boolean displayTableFlag) {
@@ -140,43 +146,46 @@ public class CSVSeries extends Series {
     }
 
     /**
-     * Load the series from a properties file.
+     * Load the series from every CSV file matching the file pattern.
      */
     @Override
-    public List<PlotPoint> loadSeries(FilePath workspaceRootDir,
-                                      int buildNumber, PrintStream logger) {
-        List<PlotPoint> plotPoints = null;
-        FilePath[] seriesFiles;
-        try {
-            seriesFiles = workspaceRootDir.list(getFile());
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Exception trying to retrieve series files", e);
-            return null;
-        }
-
+    protected List<PlotPoint> parseSeries(FilePath workspaceRootDir, FilePath[] seriesFiles,
+                                          SeriesFileCache cache, int buildNumber,
+                                          PrintStream logger) {
         if (ArrayUtils.isEmpty(seriesFiles)) {
             LOGGER.info("No plot data file found: " + workspaceRootDir.getName()
                     + " " + getFile());
             return null;
         }
 
-        for (FilePath seriesFile : seriesFiles) {
-            List<PlotPoint> seriesList = loadSeriesFile(seriesFile, buildNumber);
-            if (seriesList != null) {
-                if (plotPoints != null) {
-                    plotPoints.addAll(seriesList);
-                } else {
-                    plotPoints = seriesList;
-                }
-            }
+        // the labels come from the headers, which already tell the files apart
+        try {
+            return SeriesFiles.merge(workspaceRootDir, seriesFiles, SeriesFiles.parseAll(
+                    seriesFiles, f -> loadSeriesFile(f, cache, buildNumber)), false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         }
-        return plotPoints;
     }
 
-    private List<PlotPoint> loadSeriesFile(FilePath seriesFile, int buildNumber) {
-        CSVReader reader = null;
+    /**
+     * Load the series from one CSV file. The rows of a file shared with
+     * other series are read once for all of them.
+     */
+    private List<PlotPoint> loadSeriesFile(FilePath seriesFile, SeriesFileCache cache,
+                                           int buildNumber) {
+        if (cache.isShared(seriesFile)) {
+            try {
+                return loadRows(cache.getRows(seriesFile), buildNumber);
+            } catch (IOException ioe) {
+                LOGGER.log(Level.SEVERE, "Exception loading series", ioe);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+
         InputStream in = null;
-        InputStreamReader inputReader = null;
 
         try {
             List<PlotPoint> ret = new ArrayList<>();
@@ -198,81 +207,75 @@ public class CSVSeries extends Series {
             }
 
             // load existing plot file
-            inputReader = new InputStreamReader(in, Charset.defaultCharset().name());
-            reader = new CSVReader(inputReader);
-            String[] nextLine;
+            CSVTokenizer tokenizer = new CSVTokenizer(
+                    new InputStreamReader(in, Charset.defaultCharset()));
 
             // save the header line to use it for the plot labels.
-            String[] headerLine = reader.readNext();
+            String[] headerLine = tokenizer.next() ? tokenizer.toArray() : null;
+            ColumnPlan plan = new ColumnPlan(headerLine, buildNumber);
 
             // read each line of the CSV file and add to rawPlotData
             int lineNum = 0;
-            while ((nextLine = reader.readNext()) != null) {
+            while (tokenizer.next()) {
                 // skip empty lines
-                if (nextLine.length == 1 && nextLine[0].length() == 0) {
+                if (tokenizer.size() == 1 && tokenizer.length(0) == 0) {
                     continue;
                 }
 
-                for (int index = 0; index < nextLine.length; index++) {
-                    String yvalue;
-                    String label = null;
-
-                    yvalue = nextLine[index].trim();
-
+                for (int index = 0; index < tokenizer.size(); index++) {
                     // empty value, caused by e.g. trailing comma in CSV
-                    if (yvalue.trim().length() == 0) {
+                    if (!plan.isKept(index) || tokenizer.isBlank(index)) {
                         continue;
                     }
 
-                    if (index < headerLine.length) {
-                        label = headerLine[index].trim();
-                    }
-
-                    if (label == null || label.length() <= 0) {
-                        // if there isn't a label, use the index as the label
-                        label = "" + index;
-                    }
-
-                    // LOGGER.finest("Loaded point: " + point);
+                    String yvalue = tokenizer.getTrimmed(index);
 
                     // create a new point with the yvalue from the csv file and
                     // url from the URL_index in the properties file.
-                    if (!excludePoint(label, index)) {
-                        PlotPoint point = new PlotPoint(yvalue, getUrl(url,
-                                label, index, buildNumber), label);
-                        if (LOGGER.isLoggable(DEFAULT_LOG_LEVEL)) {
-                            LOGGER.log(DEFAULT_LOG_LEVEL, "CSV Point: [" + index
-                                    + ":" + lineNum + "]" + point);
-                        }
-                        ret.add(point);
-                    } else {
-                        if (LOGGER.isLoggable(DEFAULT_LOG_LEVEL)) {
-                            LOGGER.log(DEFAULT_LOG_LEVEL, "excluded CSV Column: "
-                                    + index + " : " + label);
-                        }
+                    PlotPoint point = new PlotPoint(yvalue, plan.getUrl(index),
+                            plan.getLabel(index));
+                    if (LOGGER.isLoggable(DEFAULT_LOG_LEVEL)) {
+                        LOGGER.log(DEFAULT_LOG_LEVEL, "CSV Point: [" + index
+                                + ":" + lineNum + "]" + point);
                     }
+                    ret.add(point);
                 }
                 lineNum++;
             }
 
             return ret;
-        } catch (CsvValidationException | IOException ioe) {
+        } catch (IOException ioe) {
             LOGGER.log(Level.SEVERE, "Exception loading series", ioe);
         } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    LOGGER.log(Level.SEVERE, "Failed to close series reader", e);
-                }
-            }
-            IOUtils.closeQuietly(inputReader);
             IOUtils.closeQuietly(in);
         }
 
         return null;
     }
 
+    /**
+     * Load the series from the rows of a CSV file, header included.
+     */
+    private List<PlotPoint> loadRows(List<String[]> rows, int buildNumber) {
+        List<PlotPoint> ret = new ArrayList<>();
+        ColumnPlan plan = new ColumnPlan(rows.isEmpty() ? null : rows.get(0), buildNumber);
+        for (int row = 1; row < rows.size(); row++) {
+            String[] fields = rows.get(row);
+            // skip empty lines
+            if (fields.length == 1 && fields[0].isEmpty()) {
+                continue;
+            }
+            for (int index = 0; index < fields.length; index++) {
+                String yvalue = fields[index].trim();
+                if (!plan.isKept(index) || yvalue.isEmpty()) {
+                    continue;
+                }
+                ret.add(new PlotPoint(yvalue, plan.getUrl(index), plan.getLabel(index)));
+            }
+        }
+        return ret;
+    }
+
     /**
      * This function checks the exclusion/inclusion filters from the properties
      * file and returns true if a point should be excluded.
@@ -324,8 +327,8 @@ public class CSVSeries extends Series {
         if (strExclusionSet.contains(label)) {
             return true;
         } else {
-            for (String s : strExclusionSet) {
-                if (checkPatternIsValid(s) && label.matches(s)) {
+            for (Pattern pattern : getExclusionPatterns()) {
+                if (pattern.matcher(label).matches()) {
                     return true;
                 }
             }
@@ -333,13 +336,82 @@ public class CSVSeries extends Series {
         return false;
     }
 
-    private boolean checkPatternIsValid(String pattern) {
-        try {
-            Pattern.compile(pattern);
-        } catch (java.util.regex.PatternSyntaxException e) {
-            return false;
+    private List<Pattern> getExclusionPatterns() {
+        List<Pattern> patterns = exclusionPatterns;
+        if (patterns == null) {
+            patterns = new ArrayList<>();
+            for (String s : strExclusionSet) {
+                try {
+                    patterns.add(Pattern.compile(s));
+                } catch (PatternSyntaxException e) {
+                    // plain text values are only compared as strings
+                }
+            }
+            exclusionPatterns = patterns;
+        }
+        return patterns;
+    }
+
+    /**
+     * What to do with each column of a CSV file, worked out once from its
+     * header: whether the column is kept, and the label and url of its points.
+     * Columns beyond the header are added as rows reach them.
+     */
+    private final class ColumnPlan {
+        private final String[] headerLine;
+        private final int buildNumber;
+        private final BitSet kept = new BitSet();
+        private String[] labels = new String[0];
+        private String[] urls = new String[0];
+
+        ColumnPlan(String[] headerLine, int buildNumber) {
+            this.headerLine = headerLine;
+            this.buildNumber = buildNumber;
+            extend(headerLine != null ? headerLine.length : 0);
+        }
+
+        boolean isKept(int index) {
+            if (index >= labels.length) {
+                extend(index + 1);
+            }
+            return kept.get(index);
+        }
+
+        String getLabel(int index) {
+            return labels[index];
+        }
+
+        String getUrl(int index) {
+            return urls[index];
+        }
+
+        private void extend(int columns) {
+            int from = labels.length;
+            labels = Arrays.copyOf(labels, columns);
+            urls = Arrays.copyOf(urls, columns);
+            for (int index = from; index < columns; index++) {
+                String label = null;
+                if (headerLine != null && index < headerLine.length) {
+                    label = headerLine[index].trim();
+                }
+
+                if (label == null || label.length() <= 0) {
+                    // if there isn't a label, use the index as the label
+                    label = String.valueOf(index);
+                }
+
+                if (excludePoint(label, index)) {
+                    if (LOGGER.isLoggable(DEFAULT_LOG_LEVEL)) {
+                        LOGGER.log(DEFAULT_LOG_LEVEL, "excluded CSV Column: "
+                                + index + " : " + label);
+                    }
+                    continue;
+                }
+                kept.set(index);
+                labels[index] = label;
+                urls[index] = CSVSeries.this.getUrl(url, label, index, buildNumber);
+            }
         }
-        return true;
     }
 
     /**
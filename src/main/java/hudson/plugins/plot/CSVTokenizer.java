@@ -0,0 +1,432 @@
+package hudson.plugins.plot;
+
+import com.opencsv.CSVParser;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads CSV files record by record without creating a string per field.
+ * <p>
+ * Lines are split in place in a character buffer and fields only become
+ * strings when asked for; numbers are parsed straight from the buffer. Lines
+ * made of plain fields and of quoted fields without quotes inside, which is
+ * what {@link com.opencsv.CSVWriter} writes for plot files, are split here.
+ * Any other line, for example one with escaped quotes, backslashes or a
+ * quoted field spanning several lines, is handed to opencsv's
+ * {@link CSVParser}, so that files read exactly as with
+ * {@link com.opencsv.CSVReader}.
+ */
+final class CSVTokenizer implements Closeable {
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The powers of ten that are exactly representable as doubles.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Reader reader;
+
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean eof;
+    private boolean skipLineFeed;
+    private int lineStart;
+    private int lineEnd;
+
+    /**
+     * The characters of the current record: the buffer, or a copy of the
+     * fields parsed by opencsv.
+     */
+    private char[] chars;
+    private char[] parsed = new char[0];
+    private int size;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+
+    private CSVParser parser;
+
+    CSVTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return false at the end of the input
+     */
+    boolean next() throws IOException {
+        if (!readLine()) {
+            size = 0;
+            return false;
+        }
+        if (!split()) {
+            parse();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of fields of the current record.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of characters of a field.
+     */
+    int length(int field) {
+        check(field);
+        return ends[field] - starts[field];
+    }
+
+    String get(int field) {
+        check(field);
+        return new String(chars, starts[field], ends[field] - starts[field]);
+    }
+
+    /**
+     * Returns true if a field only contains whitespace, as understood by
+     * {@link String#trim()}.
+     */
+    boolean isBlank(int field) {
+        check(field);
+        for (int i = starts[field]; i < ends[field]; i++) {
+            if (chars[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a field without leading and trailing whitespace, as
+     * {@link String#trim()} does.
+     */
+    String getTrimmed(int field) {
+        check(field);
+        int start = starts[field];
+        int end = ends[field];
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+        return new String(chars, start, end - start);
+    }
+
+    /**
+     * Parses a field as {@link Integer#parseInt(String)} does.
+     */
+    int getInt(int field) {
+        check(field);
+        long value = parseDigits(field, 9);
+        return value != Long.MIN_VALUE ? (int) value : Integer.parseInt(get(field));
+    }
+
+    /**
+     * Parses a field as {@link Long#parseLong(String)} does.
+     */
+    long getLong(int field) {
+        check(field);
+        long value = parseDigits(field, 18);
+        return value != Long.MIN_VALUE ? value : Long.parseLong(get(field));
+    }
+
+    /**
+     * Parses a field as {@link Double#parseDouble(String)} does.
+     */
+    double getDouble(int field) {
+        check(field);
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int significant = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (mantissa != 0 || c != '0') {
+                    significant++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) {
+                    scale--;
+                }
+                if (significant > 15) {
+                    return Double.parseDouble(get(field));
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return Double.parseDouble(get(field));
+        }
+        if (i < end && (chars[i] == 'e' || chars[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+                negativeExponent = chars[i] == '-';
+                i++;
+            }
+            int exponent = 0;
+            int exponentDigits = 0;
+            for (; i < end && chars[i] >= '0' && chars[i] <= '9' && exponentDigits < 4; i++) {
+                exponent = exponent * 10 + (chars[i] - '0');
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return Double.parseDouble(get(field));
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (i != end) {
+            return Double.parseDouble(get(field));
+        }
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (scale >= 0 && scale < POWERS_OF_TEN.length) {
+            // both operands are exact, so the result is correctly rounded
+            value = mantissa * POWERS_OF_TEN[scale];
+        } else if (scale < 0 && -scale < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-scale];
+        } else {
+            return Double.parseDouble(get(field));
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns the fields of the current record.
+     */
+    String[] toArray() {
+        String[] record = new String[size];
+        for (int i = 0; i < size; i++) {
+            record[i] = get(i);
+        }
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void check(int field) {
+        if (field < 0 || field >= size) {
+            throw new ArrayIndexOutOfBoundsException(field);
+        }
+    }
+
+    /**
+     * Parses a field made of an optional sign and at most the given number
+     * of ASCII digits.
+     *
+     * @return the value, or {@link Long#MIN_VALUE} if the field has another
+     * form
+     */
+    private long parseDigits(int field, int maxDigits) {
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+        if (end - i < 1 || end - i > maxDigits) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Finds the next line, ended by a line feed, a carriage return or both,
+     * like {@link java.io.BufferedReader#readLine()}.
+     */
+    private boolean readLine() throws IOException {
+        if (skipLineFeed) {
+            if (position == limit) {
+                fill();
+            }
+            if (position < limit && buffer[position] == '\n') {
+                position++;
+            }
+            skipLineFeed = false;
+        }
+        int scan = position;
+        while (true) {
+            if (scan == limit) {
+                int offset = scan - position;
+                if (!fill()) {
+                    if (position == limit) {
+                        return false;
+                    }
+                    lineStart = position;
+                    lineEnd = limit;
+                    position = limit;
+                    return true;
+                }
+                scan = position + offset;
+                continue;
+            }
+            char c = buffer[scan];
+            if (c == '\n' || c == '\r') {
+                lineStart = position;
+                lineEnd = scan;
+                position = scan + 1;
+                skipLineFeed = c == '\r';
+                return true;
+            }
+            scan++;
+        }
+    }
+
+    /**
+     * Reads more characters, moving the unread ones to the start of the
+     * buffer first.
+     *
+     * @return false at the end of the input
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    /**
+     * Splits the current line in place.
+     *
+     * @return false if the line has to be parsed by opencsv
+     */
+    private boolean split() {
+        chars = buffer;
+        size = 0;
+        int i = lineStart;
+        while (true) {
+            int start;
+            int end;
+            if (i < lineEnd && buffer[i] == '"') {
+                int close = i + 1;
+                while (close < lineEnd && buffer[close] != '"' && buffer[close] != '\\') {
+                    close++;
+                }
+                if (close == lineEnd || buffer[close] == '\\'
+                        || (close + 1 < lineEnd && buffer[close + 1] != ',')) {
+                    return false;
+                }
+                start = i + 1;
+                end = close;
+                i = close + 1;
+            } else {
+                start = i;
+                while (i < lineEnd && buffer[i] != ',') {
+                    if (buffer[i] == '"' || buffer[i] == '\\') {
+                        return false;
+                    }
+                    i++;
+                }
+                end = i;
+            }
+            addField(start, end);
+            if (i >= lineEnd) {
+                return true;
+            }
+            // skip the separator
+            i++;
+        }
+    }
+
+    /**
+     * Parses the current line with opencsv, along with the following lines
+     * when a quoted field spans several lines.
+     */
+    private void parse() throws IOException {
+        if (parser == null) {
+            parser = new CSVParser();
+        }
+        String[] record = parser.parseLineMulti(new String(buffer, lineStart, lineEnd - lineStart));
+        while (parser.isPending()) {
+            if (!readLine()) {
+                throw new IOException("Unterminated quoted field at end of CSV file");
+            }
+            String[] more = parser.parseLineMulti(
+                    new String(buffer, lineStart, lineEnd - lineStart));
+            if (more.length > 0) {
+                String[] combined = Arrays.copyOf(record, record.length + more.length);
+                System.arraycopy(more, 0, combined, record.length, more.length);
+                record = combined;
+            }
+        }
+
+        int length = 0;
+        for (String field : record) {
+            length += field != null ? field.length() : 0;
+        }
+        if (parsed.length < length) {
+            parsed = new char[length];
+        }
+        chars = parsed;
+        size = 0;
+        int offset = 0;
+        for (String field : record) {
+            int fieldLength = field != null ? field.length() : 0;
+            if (fieldLength > 0) {
+                field.getChars(0, fieldLength, parsed, offset);
+            }
+            addField(offset, offset + fieldLength);
+            offset += fieldLength;
+        }
+    }
+
+    private void addField(int start, int end) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+}
@@ -0,0 +1,414 @@
+package hudson.plugins.plot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Binary, column oriented alternative to the plot CSV file.
+ * <p>
+ * The file starts with a magic number and is followed by any number of
+ * blocks, one per append. Each block holds the records of one or more builds
+ * split into columns:
+ * <ul>
+ * <li>a dictionary of the series labels, URLs and the text of the values
+ * that can't be given back from their number
+ * <li>the dictionary encoded label and URL of each record
+ * <li>the delta encoded build numbers and build timestamps
+ * <li>the raw double values
+ * </ul>
+ * Files are read through a {@link MappedByteBuffer}, so loading a plot does
+ * not involve any text parsing. A block left incomplete by a failed append
+ * is ignored when reading and dropped by the next append. Files are only ever
+ * grown in place: readers map them without a lock, and would fail on pages
+ * cut off while mapped.
+ */
+final class ColumnarPlotFile {
+    private static final Logger LOGGER = Logger.getLogger(ColumnarPlotFile.class.getName());
+
+    private static final byte[] MAGIC = "PLOTCOL1".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int NO_ENTRY = -1;
+
+    private ColumnarPlotFile() {
+    }
+
+    /**
+     * Reads all records of the given file.
+     */
+    static PlotData read(File file) throws IOException {
+        PlotData records = new PlotData();
+        if (!file.exists()) {
+            return records;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            checkMagic(buffer, file);
+            while (buffer.remaining() >= Integer.BYTES) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    LOGGER.log(Level.WARNING, "Ignoring truncated block at the end of " + file);
+                    break;
+                }
+                ByteBuffer block = buffer.slice();
+                block.limit(length);
+                readBlock(block, records);
+                buffer.position(buffer.position() + length);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed columnar plot file: " + file, e);
+        }
+        return records;
+    }
+
+    /**
+     * Returns the build number of the first record in the given file, or -1
+     * if the file holds no records.
+     */
+    static int firstBuildNumber(File file) throws IOException {
+        if (!file.exists()) {
+            return NO_ENTRY;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            checkMagic(buffer, file);
+            while (buffer.remaining() >= Integer.BYTES) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    break;
+                }
+                ByteBuffer block = buffer.slice();
+                block.limit(length);
+                int count = block.getInt();
+                if (count > 0) {
+                    skipDictionary(block);
+                    // skip the label and url columns
+                    for (int i = 0; i < 2 * count; i++) {
+                        readVarLong(block);
+                    }
+                    return (int) zigZagDecode(readVarLong(block));
+                }
+                buffer.position(buffer.position() + length);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed columnar plot file: " + file, e);
+        }
+        return NO_ENTRY;
+    }
+
+    /**
+     * Appends the given records to the file as a new block, creating the file
+     * if needed. An incomplete block at the end of the file is dropped first,
+     * as the records appended after it couldn't be read.
+     */
+    static void append(File file, PlotData records) throws IOException {
+        boolean newFile = file.length() == 0;
+        if (records.isEmpty() && !newFile) {
+            return;
+        }
+        if (!newFile) {
+            dropTruncatedBlock(file);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            long end = channel.size();
+            if (end == 0) {
+                writeFully(channel, ByteBuffer.wrap(MAGIC), 0);
+                end = MAGIC.length;
+            }
+            if (!records.isEmpty()) {
+                writeFully(channel, ByteBuffer.wrap(encodeBlock(records)), end);
+            }
+        }
+    }
+
+    /**
+     * Replaces the content of the file with the given records, written as a
+     * single block.
+     */
+    static void write(File file, PlotData records) throws IOException {
+        File tmpFile = createTempFile(file);
+        try {
+            try (OutputStream out = new FileOutputStream(tmpFile)) {
+                out.write(MAGIC);
+                if (!records.isEmpty()) {
+                    out.write(encodeBlock(records));
+                }
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    /**
+     * Replaces the file with a copy of its complete blocks if it ends with an
+     * incomplete one. The copy is moved over the file rather than the file
+     * truncated, so that readers keep the file they mapped.
+     */
+    private static void dropTruncatedBlock(File file) throws IOException {
+        File tmpFile = null;
+        try {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long end = completeLength(channel, file);
+                if (end == channel.size()) {
+                    return;
+                }
+                LOGGER.log(Level.WARNING, "Dropping truncated block at the end of " + file);
+                tmpFile = createTempFile(file);
+                try (FileChannel copy = FileChannel.open(tmpFile.toPath(),
+                        StandardOpenOption.WRITE)) {
+                    long position = 0;
+                    while (position < end) {
+                        position += channel.transferTo(position, end - position, copy);
+                    }
+                }
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            if (tmpFile != null) {
+                Files.deleteIfExists(tmpFile.toPath());
+            }
+        }
+    }
+
+    /**
+     * Creates an empty temporary file next to the given file, to be moved
+     * over it. The name is unique, as concurrent writers must not share their
+     * temporary file.
+     */
+    private static File createTempFile(File file) throws IOException {
+        return Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(),
+                file.getName(), ".tmp").toFile();
+    }
+
+    /**
+     * Returns the length of the file up to the end of its last complete
+     * block.
+     */
+    private static long completeLength(FileChannel channel, File file) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+        readFully(channel, magic, 0);
+        magic.flip();
+        checkMagic(magic, file);
+        long size = channel.size();
+        long end = MAGIC.length;
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        while (size - end >= Integer.BYTES) {
+            header.clear();
+            readFully(channel, header, end);
+            int length = header.getInt(0);
+            if (length < 0 || length > size - end - Integer.BYTES) {
+                break;
+            }
+            end += Integer.BYTES + length;
+        }
+        return end;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static void checkMagic(ByteBuffer buffer, File file) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        if (buffer.remaining() < magic.length) {
+            throw new IOException("Not a columnar plot file: " + file);
+        }
+        buffer.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a columnar plot file: " + file);
+        }
+    }
+
+    private static byte[] encodeBlock(PlotData records) throws IOException {
+        int count = records.size();
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        int[] labelIds = new int[count];
+        int[] urlIds = new int[count];
+        List<int[]> texts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            labelIds[i] = dictionaryId(records.getLabel(i), ids, dictionary);
+            urlIds[i] = dictionaryId(records.getUrl(i), ids, dictionary);
+            String text = records.getText(i);
+            if (text != null) {
+                texts.add(new int[]{i, dictionaryId(text, ids, dictionary)});
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(count);
+        out.writeInt(dictionary.size());
+        for (String entry : dictionary) {
+            byte[] utf8 = entry.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+        for (int id : labelIds) {
+            writeVarLong(out, zigZagEncode(id));
+        }
+        for (int id : urlIds) {
+            writeVarLong(out, zigZagEncode(id));
+        }
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            writeVarLong(out, zigZagEncode(records.getBuildNumber(i) - previous));
+            previous = records.getBuildNumber(i);
+        }
+        previous = 0;
+        for (int i = 0; i < count; i++) {
+            writeVarLong(out, zigZagEncode(records.getTimestamp(i) - previous));
+            previous = records.getTimestamp(i);
+        }
+        for (int i = 0; i < count; i++) {
+            out.writeDouble(records.getValue(i));
+        }
+        out.writeInt(texts.size());
+        for (int[] text : texts) {
+            writeVarLong(out, text[0]);
+            writeVarLong(out, text[1]);
+        }
+        out.flush();
+
+        ByteArrayOutputStream block = new ByteArrayOutputStream(bytes.size() + Integer.BYTES);
+        new DataOutputStream(block).writeInt(bytes.size());
+        bytes.writeTo(block);
+        return block.toByteArray();
+    }
+
+    private static void readBlock(ByteBuffer block, PlotData records) {
+        int count = block.getInt();
+        String[] dictionary = new String[block.getInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            byte[] utf8 = new byte[block.getInt()];
+            block.get(utf8);
+            dictionary[i] = new String(utf8, StandardCharsets.UTF_8);
+        }
+        int[] labelIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            labelIds[i] = (int) zigZagDecode(readVarLong(block));
+        }
+        int[] urlIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            urlIds[i] = (int) zigZagDecode(readVarLong(block));
+        }
+        int[] buildNumbers = new int[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += zigZagDecode(readVarLong(block));
+            buildNumbers[i] = (int) previous;
+        }
+        long[] timestamps = new long[count];
+        previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += zigZagDecode(readVarLong(block));
+            timestamps[i] = previous;
+        }
+        int valuesStart = block.position();
+        block.position(valuesStart + count * Double.BYTES);
+        String[] texts = new String[count];
+        int textCount = block.getInt();
+        for (int i = 0; i < textCount; i++) {
+            int index = (int) readVarLong(block);
+            texts[index] = dictionary[(int) readVarLong(block)];
+        }
+        for (int i = 0; i < count; i++) {
+            String label = dictionaryEntry(dictionary, labelIds[i]);
+            String url = dictionaryEntry(dictionary, urlIds[i]);
+            if (texts[i] != null) {
+                records.add(texts[i], label, buildNumbers[i], timestamps[i], url);
+            } else {
+                records.add(block.getDouble(valuesStart + i * Double.BYTES), label,
+                        buildNumbers[i], timestamps[i], url);
+            }
+        }
+    }
+
+    private static void skipDictionary(ByteBuffer block) {
+        int size = block.getInt();
+        for (int i = 0; i < size; i++) {
+            int length = block.getInt();
+            block.position(block.position() + length);
+        }
+    }
+
+    private static int dictionaryId(String entry, Map<String, Integer> ids,
+                                    List<String> dictionary) {
+        if (entry == null) {
+            return NO_ENTRY;
+        }
+        Integer id = ids.get(entry);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.add(entry);
+            ids.put(entry, id);
+        }
+        return id;
+    }
+
+    private static String dictionaryEntry(String[] dictionary, int id) {
+        return id == NO_ENTRY ? null : dictionary[id];
+    }
+
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.writeByte((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        out.writeByte((int) remaining);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
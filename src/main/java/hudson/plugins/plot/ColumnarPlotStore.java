@@ -0,0 +1,107 @@
+package hudson.plugins.plot;
+
+import hudson.Extension;
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.function.IntPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores the plot data in the binary {@link ColumnarPlotFile} format, next to
+ * the CSV file of the plot. Existing CSV data is migrated once, on first use;
+ * the CSV file itself is left untouched.
+ */
+@Extension
+public class ColumnarPlotStore extends PlotStore {
+    private static final Logger LOGGER = Logger.getLogger(ColumnarPlotStore.class.getName());
+
+    static final String ID = "columnar";
+
+    private final CSVPlotStore csvStore = new CSVPlotStore();
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public void append(Plot plot, PlotData records) throws IOException {
+        migrate(plot);
+        try {
+            ColumnarPlotFile.append(getFile(plot), records);
+        } finally {
+            changed(plot);
+        }
+    }
+
+    @Override
+    public PlotData read(Plot plot, int fromBuild, int toBuild, Set<String> series)
+            throws IOException {
+        migrate(plot);
+        PlotData records = ColumnarPlotFile.read(getFile(plot));
+        if (fromBuild == Integer.MIN_VALUE && toBuild == Integer.MAX_VALUE && series == null) {
+            return records;
+        }
+        return records.select(fromBuild, toBuild, series);
+    }
+
+    @Override
+    public int getOldestBuild(Plot plot) throws IOException {
+        migrate(plot);
+        return ColumnarPlotFile.firstBuildNumber(getFile(plot));
+    }
+
+    @Override
+    public void retain(Plot plot, IntPredicate builds) throws IOException {
+        PlotData records = read(plot, Integer.MIN_VALUE, Integer.MAX_VALUE, null);
+        PlotData retained = new PlotData(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            if (builds.test(records.getBuildNumber(i))) {
+                retained.add(records, i);
+            }
+        }
+        // leave the file and its last modification time alone if nothing is dropped
+        if (retained.size() < records.size()) {
+            ColumnarPlotFile.write(getFile(plot), retained);
+            changed(plot);
+        }
+    }
+
+    @Override
+    public long getVersion(Plot plot) {
+        return getFileVersion(plot, getFile(plot));
+    }
+
+    private File getFile(Plot plot) {
+        return getDataFile(plot, ".plot");
+    }
+
+    /**
+     * Converts the CSV file of the plot to the columnar format, unless that
+     * was already done. Runs under the lock of the plot, as reads from
+     * request threads may race with the appends of a build.
+     */
+    private void migrate(Plot plot) throws IOException {
+        File columnarFile = getFile(plot);
+        File csvFile = csvStore.getFile(plot);
+        if (columnarFile.exists() || !csvFile.exists()) {
+            return;
+        }
+        Lock lock = getLock(plot);
+        lock.lock();
+        try {
+            if (columnarFile.exists()) {
+                return;
+            }
+            PlotData records = csvStore.read(plot, Integer.MIN_VALUE, Integer.MAX_VALUE, null);
+            ColumnarPlotFile.write(columnarFile, records);
+            changed(plot);
+            LOGGER.log(Level.INFO, "Migrated " + csvFile + " to " + columnarFile);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
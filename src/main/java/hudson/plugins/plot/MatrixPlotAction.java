@@ -25,6 +25,13 @@ public class MatrixPlotAction implements Action, StaplerProxy {
         return project;
     }
 
+    /**
+     * Returns the plots of the configuration.
+     */
+    public List<Plot> getPlots() {
+        return publisher.getPlots(project);
+    }
+
     // called from MatrixPlotAction/index.jelly
     public boolean hasPlots() throws IOException {
         return CollectionUtils.isNotEmpty(publisher.getPlots(project));
@@ -20,8 +20,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import net.sf.json.JSONObject;
-import org.apache.commons.lang.ObjectUtils;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
@@ -31,9 +33,16 @@ import org.kohsuke.stapler.StaplerRequest;
  */
 public class MatrixPlotPublisher extends AbstractPlotPublisher {
 
-    private transient Map<MatrixConfiguration, List<Plot>> plotsOfConfigurations = new HashMap<>();
+    /**
+     * The plots of each configuration, created by its first build.
+     */
+    private transient ConcurrentMap<MatrixConfiguration, ConfigurationPlots>
+            plotsOfConfigurations = new ConcurrentHashMap<>();
 
-    private transient Map<String, List<Plot>> groupMap = new HashMap<String, List<Plot>>();
+    /**
+     * The URL friendly names of the groups of the plots of all configurations.
+     */
+    private transient Set<String> urlGroups = ConcurrentHashMap.newKeySet();
 
     /**
      * Configured plots.
@@ -44,18 +53,8 @@ public class MatrixPlotPublisher extends AbstractPlotPublisher {
         if (urlGroup == null || "nogroup".equals(urlGroup)) {
             return "Plots";
         }
-        if (groupMap.containsKey(urlGroup)) {
-            List<Plot> plotList = new ArrayList<>();
-            for (Plot plot : groupMap.get(urlGroup)) {
-                if (ObjectUtils.equals(plot.getProject(), c)) {
-                    plotList.add(plot);
-                }
-            }
-            if (plotList.size() > 0) {
-                return plotList.get(0).group;
-            }
-        }
-        return "";
+        List<Plot> groupPlots = getPlots(urlGroup, c);
+        return groupPlots.isEmpty() ? "" : groupPlots.get(0).group;
     }
 
     /**
@@ -63,7 +62,7 @@ public class MatrixPlotPublisher extends AbstractPlotPublisher {
      */
     public List<String> getOriginalGroups(MatrixConfiguration configuration) {
         List<String> originalGroups = new ArrayList<>();
-        for (String urlGroup : groupMap.keySet()) {
+        for (String urlGroup : urlGroups) {
             originalGroups.add(urlGroupToOriginalGroup(urlGroup, configuration));
         }
         Collections.sort(originalGroups);
@@ -77,40 +76,29 @@ public class MatrixPlotPublisher extends AbstractPlotPublisher {
      */
     public void setPlots(List<Plot> plots) {
         this.plots = plots;
-        groupMap = new HashMap<>();
-        plotsOfConfigurations = new HashMap<>();
+        urlGroups = ConcurrentHashMap.newKeySet();
+        plotsOfConfigurations = new ConcurrentHashMap<>();
     }
 
     /**
      * Adds the new plot to the plot data structures managed by this object.
      *
-     * @param plot the new plot
+     * @param plot the new plot, whose project is a matrix configuration
      */
     public void addPlot(Plot plot) {
         String urlGroup = originalGroupToUrlEncodedGroup(plot.getGroup());
-        if (groupMap.containsKey(urlGroup)) {
-            List<Plot> list = groupMap.get(urlGroup);
-            list.add(plot);
-        } else {
-            List<Plot> list = new ArrayList<>();
-            list.add(plot);
-            groupMap.put(urlGroup, list);
-        }
-        if (plotsOfConfigurations.get((MatrixConfiguration) plot.getProject()) == null) {
-            List<Plot> list = new ArrayList<>();
-            list.add(plot);
-            plotsOfConfigurations.put((MatrixConfiguration) plot.getProject(), list);
-        } else {
-            plotsOfConfigurations.get((MatrixConfiguration) plot.getProject()).add(plot);
-        }
+        urlGroups.add(urlGroup);
+        plotsOfConfigurations.compute((MatrixConfiguration) plot.getProject(),
+                (configuration, current) -> (current != null ? current : ConfigurationPlots.NONE)
+                        .with(plot, urlGroup));
     }
 
     /**
      * Returns the entire list of plots managed by this object.
      */
     public List<Plot> getPlots(MatrixConfiguration configuration) {
-        List<Plot> p = plotsOfConfigurations.get(configuration);
-        return (p != null) ? p : new ArrayList<Plot>();
+        ConfigurationPlots p = getConfigurationPlots(configuration);
+        return (p != null) ? p.plots : Collections.emptyList();
     }
 
     public List<Plot> getPlots() {
@@ -123,16 +111,13 @@ public class MatrixPlotPublisher extends AbstractPlotPublisher {
      */
     public List<Plot> getPlots(String urlGroup,
                                MatrixConfiguration configuration) {
-        List<Plot> groupPlots = new ArrayList<>();
-        List<Plot> p = groupMap.get(urlGroup);
-        if (p != null) {
-            for (Plot plot : p) {
-                if (ObjectUtils.equals(plot.getProject(), configuration)) {
-                    groupPlots.add(plot);
-                }
-            }
-        }
-        return groupPlots;
+        ConfigurationPlots p = getConfigurationPlots(configuration);
+        List<Plot> groupPlots = p != null ? p.groups.get(urlGroup) : null;
+        return (groupPlots != null) ? groupPlots : Collections.emptyList();
+    }
+
+    private ConfigurationPlots getConfigurationPlots(MatrixConfiguration configuration) {
+        return configuration != null ? plotsOfConfigurations.get(configuration) : null;
     }
 
     /**
@@ -148,20 +133,31 @@ public class MatrixPlotPublisher extends AbstractPlotPublisher {
 
     @Override
     public boolean prebuild(AbstractBuild<?, ?> build, BuildListener listener) {
-        if (!plotsOfConfigurations.containsKey((MatrixConfiguration) build.getProject())) {
-            for (Plot p : plots) {
-                Plot plot = new Plot(p.title, p.yaxis, p.group, p.numBuilds,
-                        p.csvFileName, p.style, p.useDescr, p.getKeepRecords(),
-                        p.getExclZero(), p.isLogarithmic(), p.yaxisMinimum, p.yaxisMaximum,
-                        p.description);
-                plot.series = p.series;
-                plot.setProject((MatrixConfiguration) build.getProject());
-                addPlot(plot);
-            }
-        }
+        MatrixConfiguration configuration = (MatrixConfiguration) build.getProject();
+        // concurrent builds of a configuration create its plots only once
+        plotsOfConfigurations.computeIfAbsent(configuration, this::createPlots);
         return true;
     }
 
+    /**
+     * Creates the plots of a configuration from the configured plots.
+     */
+    private ConfigurationPlots createPlots(MatrixConfiguration configuration) {
+        ConfigurationPlots configurationPlots = ConfigurationPlots.NONE;
+        for (Plot p : plots) {
+            Plot plot = new Plot(p.title, p.yaxis, p.group, p.numBuilds,
+                    p.csvFileName, p.style, p.useDescr, p.getKeepRecords(),
+                    p.getExclZero(), p.isLogarithmic(), p.yaxisMinimum, p.yaxisMaximum,
+                    p.description);
+            plot.series = p.series;
+            plot.setProject(configuration);
+            String urlGroup = originalGroupToUrlEncodedGroup(plot.getGroup());
+            urlGroups.add(urlGroup);
+            configurationPlots = configurationPlots.with(plot, urlGroup);
+        }
+        return configurationPlots;
+    }
+
     @Override
     public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
                            BuildListener listener) throws IOException, InterruptedException {
@@ -171,10 +167,8 @@ public class MatrixPlotPublisher extends AbstractPlotPublisher {
         listener.getLogger().println("Recording plot data");
 
         // add the build to each plot
-        for (Plot plot : plotsOfConfigurations.get(((MatrixRun) build)
-                .getProject())) {
-            plot.addBuild(build, listener.getLogger());
-        }
+        Plot.addBuild(getPlots(((MatrixRun) build).getProject()), build,
+                listener.getLogger(), build.getWorkspace());
         // misconfigured plots will not fail a build so always return true
         return true;
     }
@@ -187,6 +181,39 @@ public class MatrixPlotPublisher extends AbstractPlotPublisher {
         return this;
     }
 
+    /**
+     * The plots of a configuration, also indexed by URL friendly group name.
+     * Instances are never modified, so that builds and page views can use
+     * them without locking.
+     */
+    private static final class ConfigurationPlots {
+        static final ConfigurationPlots NONE =
+                new ConfigurationPlots(Collections.emptyList(), Collections.emptyMap());
+
+        private final List<Plot> plots;
+        private final Map<String, List<Plot>> groups;
+
+        private ConfigurationPlots(List<Plot> plots, Map<String, List<Plot>> groups) {
+            this.plots = plots;
+            this.groups = groups;
+        }
+
+        /**
+         * Returns a copy of these plots with the given plot added.
+         */
+        ConfigurationPlots with(Plot plot, String urlGroup) {
+            List<Plot> newPlots = new ArrayList<>(plots);
+            newPlots.add(plot);
+            Map<String, List<Plot>> newGroups = new HashMap<>(groups);
+            List<Plot> groupPlots = new ArrayList<>(groups.getOrDefault(urlGroup,
+                    Collections.emptyList()));
+            groupPlots.add(plot);
+            newGroups.put(urlGroup, Collections.unmodifiableList(groupPlots));
+            return new ConfigurationPlots(Collections.unmodifiableList(newPlots),
+                    Collections.unmodifiableMap(newGroups));
+        }
+    }
+
     @Extension
     public static final DescriptorImpl DESCRIPTOR = new DescriptorImpl();
 
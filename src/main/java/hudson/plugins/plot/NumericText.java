@@ -0,0 +1,172 @@
+package hudson.plugins.plot;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Scanner;
+
+/**
+ * Reads numbers from text the way {@link Scanner#hasNextDouble()} and
+ * {@link Scanner#nextDouble()} read the first token, without creating a
+ * scanner for the common cases.
+ * <p>
+ * Plain decimal numbers are parsed directly when the default locale uses a
+ * dot as decimal separator, and tokens that can't start a number in the
+ * default locale are rejected right away. Everything else, such as grouped
+ * digits or localized infinity, is still handed to a scanner.
+ */
+final class NumericText {
+    private static volatile Syntax syntax;
+
+    private NumericText() {
+    }
+
+    /**
+     * Returns true if the first token of the text is a number.
+     */
+    static boolean isDouble(String text) {
+        int start = tokenStart(text);
+        if (start == text.length()) {
+            return false;
+        }
+        int end = tokenEnd(text, start);
+        Syntax current = syntax();
+        if (current.plainDecimal && isPlainDecimal(text, start, end)) {
+            return true;
+        }
+        if (current.cannotStart(text.charAt(start))) {
+            return false;
+        }
+        return new Scanner(text).hasNextDouble();
+    }
+
+    /**
+     * Returns the number read from the first token of the text.
+     *
+     * @throws java.util.InputMismatchException if it isn't a number
+     * @throws java.util.NoSuchElementException if the text is blank
+     */
+    static double parseDouble(String text) {
+        int start = tokenStart(text);
+        int end = tokenEnd(text, start);
+        if (syntax().plainDecimal && isPlainDecimal(text, start, end)) {
+            return Double.parseDouble(text.substring(start, end));
+        }
+        return new Scanner(text).nextDouble();
+    }
+
+    private static int tokenStart(String text) {
+        int i = 0;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int tokenEnd(String text, int start) {
+        int i = start;
+        while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Checks for an optionally signed decimal number with ASCII digits, an
+     * optional dot and an optional exponent, which scanners read the same
+     * way as {@link Double#parseDouble(String)}.
+     */
+    static boolean isPlainDecimal(String text, int start, int end) {
+        int i = start;
+        if (i < end && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+            i++;
+        }
+        int digits = 0;
+        while (i < end && isAsciiDigit(text.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < end && text.charAt(i) == '.') {
+            i++;
+            while (i < end && isAsciiDigit(text.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < end && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < end && isAsciiDigit(text.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        return i == end;
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static Syntax syntax() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        Syntax current = syntax;
+        if (current == null || !current.locale.equals(locale)) {
+            current = new Syntax(locale);
+            syntax = current;
+        }
+        return current;
+    }
+
+    /**
+     * What numbers look like in a locale, as far as scanners are concerned.
+     */
+    private static final class Syntax {
+        private final Locale locale;
+
+        /**
+         * True if plain decimal numbers mean the same to scanners as to
+         * {@link Double#parseDouble(String)}.
+         */
+        private final boolean plainDecimal;
+
+        /**
+         * The characters other than digits that can start a number.
+         */
+        private final String startChars;
+
+        Syntax(Locale locale) {
+            this.locale = locale;
+            DecimalFormat format = (DecimalFormat) NumberFormat.getNumberInstance(locale);
+            DecimalFormatSymbols symbols = format.getDecimalFormatSymbols();
+            this.plainDecimal = symbols.getDecimalSeparator() == '.';
+            StringBuilder chars = new StringBuilder("+-.NI");
+            chars.append(symbols.getDecimalSeparator());
+            appendFirst(chars, symbols.getNaN());
+            appendFirst(chars, symbols.getInfinity());
+            appendFirst(chars, format.getPositivePrefix());
+            appendFirst(chars, format.getNegativePrefix());
+            this.startChars = chars.toString();
+        }
+
+        private static void appendFirst(StringBuilder chars, String s) {
+            if (s != null && !s.isEmpty()) {
+                chars.append(s.charAt(0));
+            }
+        }
+
+        boolean cannotStart(char c) {
+            return !Character.isDigit(c) && startChars.indexOf(c) < 0;
+        }
+    }
+}
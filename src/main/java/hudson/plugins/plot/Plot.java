@@ -5,9 +5,6 @@
  */
 package hudson.plugins.plot;
 
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
-import com.opencsv.exceptions.CsvValidationException;
 import hudson.FilePath;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
@@ -19,19 +16,20 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Polygon;
 import java.awt.Shape;
+import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.io.PrintStream;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.IntPredicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.collections.CollectionUtils;
@@ -81,17 +79,18 @@ public class Plot implements Comparable<Plot> {
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("MMM d");
 
     /**
-     * Effectively a 2-dimensional array, where each row is the data for one
-     * data series of an individual build; the columns are: series y-value,
-     * series label, build number, optional URL
+     * The recorded data, one record for each data series of an individual
+     * build, as last loaded from the {@link PlotStore}. The snapshot is
+     * replaced, never modified, so it can be read without locking.
      */
-    private transient List<String[]> rawPlotData;
+    private transient volatile DataSnapshot dataSnapshot;
 
     /**
-     * The generated plot, which is only regenerated when new data is added (it
-     * is re-rendered, however, every time it is requested).
+     * Whether the compaction that follows the first load of the data was
+     * scheduled. Kept apart from the snapshot, which is dropped by every
+     * compaction.
      */
-    private transient JFreeChart plot;
+    private transient volatile boolean compactionScheduled;
 
     /**
      * The project (or job) that this plot belongs to. A reference to the
@@ -114,60 +113,15 @@ public class Plot implements Comparable<Plot> {
             });
 
     /**
-     * The default plot width.
+     * Number of builds between two compactions of the CSV file.
      */
-    private static final int DEFAULT_WIDTH = 750;
+    private static final int COMPACTION_INTERVAL = 50;
 
     /**
-     * The default plot height.
+     * Prefixes of the {@link PlotImageCache} keys of the image and image map.
      */
-    private static final int DEFAULT_HEIGHT = 450;
-
-    // Transient values
-
-    /**
-     * The width of the plot.
-     */
-    private transient int width;
-
-    /**
-     * The height of the plot.
-     */
-    private transient int height;
-
-    /**
-     * The right-most build number on the plot.
-     */
-    private transient int rightBuildNum;
-
-    /**
-     * Whether or not the plot has a legend.
-     */
-    private transient boolean hasLegend = true;
-
-    /**
-     * Number of builds back to show on this plot from url.
-     */
-    @SuppressWarnings("visibilitymodifier")
-    public transient String urlNumBuilds;
-
-    /**
-     * Title of plot from url.
-     */
-    @SuppressWarnings("visibilitymodifier")
-    public transient String urlTitle;
-
-    /**
-     * Style of plot from url.
-     */
-    @SuppressWarnings("visibilitymodifier")
-    public transient String urlStyle;
-
-    /**
-     * Use description flag from url.
-     */
-    @SuppressWarnings("visibilitymodifier")
-    public transient Boolean urlUseDescr;
+    private static final String IMAGE_KEY_PREFIX = "png|";
+    private static final String MAP_KEY_PREFIX = "map|";
 
     // Configuration values
 
@@ -217,9 +171,11 @@ public class Plot implements Comparable<Plot> {
     public String csvFileName;
 
     /**
-     * The date of the last change to the CSV file.
+     * @deprecated no longer used, the version of the loaded plot data is kept
+     * in the data snapshot. Kept so that existing configurations load cleanly.
      */
-    private long csvLastModification;
+    @Deprecated
+    private transient long csvLastModification;
 
     /**
      * Optional style of plot: line, line3d, stackedArea, stackedBar, etc.
@@ -263,15 +219,15 @@ public class Plot implements Comparable<Plot> {
         private final String buildDate;
         private final String text;
 
-        public Label(String buildNum, String buildTime, String text) {
-            this.buildNum = Integer.parseInt(buildNum);
+        public Label(int buildNum, long buildTime, String text) {
+            this.buildNum = buildNum;
             synchronized (DATE_FORMAT) {
-                this.buildDate = DATE_FORMAT.format(new Date(Long.parseLong(buildTime)));
+                this.buildDate = DATE_FORMAT.format(new Date(buildTime));
             }
             this.text = text;
         }
 
-        public Label(String buildNum, String buildTime) {
+        public Label(int buildNum, long buildTime) {
             this(buildNum, buildTime, null);
         }
 
@@ -327,6 +283,20 @@ public class Plot implements Comparable<Plot> {
         }
     }
 
+    /**
+     * Plot data together with the version of the plot file it was read from.
+     * The data must not be modified once the snapshot is published.
+     */
+    private static final class DataSnapshot {
+        private final long version;
+        private final PlotData data;
+
+        DataSnapshot(long version, PlotData data) {
+            this.version = version;
+            this.data = data;
+        }
+    }
+
     /**
      * Creates a new plot with the given parameters. If numBuilds is the empty
      * string, then all builds will be included. Must not be zero.
@@ -424,8 +394,7 @@ public class Plot implements Comparable<Plot> {
     public String toString() {
         return "TITLE(" + getTitle() + "),YAXIS(" + yaxis + "),NUMSERIES("
                 + CollectionUtils.size(series) + "),GROUP(" + group
-                + "),NUMBUILDS(" + numBuilds + "),RIGHTBUILDNUM("
-                + getRightBuildNum() + "),HASLEGEND(" + hasLegend()
+                + "),NUMBUILDS(" + numBuilds
                 + "),ISLOGARITHMIC(" + isLogarithmic() + "),YAXISMINIMUM("
                 + yaxisMinimum + "),YAXISMAXIMUM(" + yaxisMaximum
                 + "),FILENAME(" + getCsvFileName() + "),DESCRIPTION("
@@ -456,165 +425,18 @@ public class Plot implements Comparable<Plot> {
         return csvFileName;
     }
 
-    /**
-     * Sets the title for the plot from the "title" parameter in the given
-     * StaplerRequest.
-     */
-    private void setTitle(StaplerRequest req) {
-        urlTitle = req.getParameter("title");
-    }
-
-    private String getURLTitle() {
-        return urlTitle != null ? urlTitle : title;
-    }
-
     public String getTitle() {
         return title;
     }
 
-    private void setStyle(StaplerRequest req) {
-        urlStyle = req.getParameter("style");
-    }
-
-    private String getUrlStyle() {
-        return urlStyle != null ? urlStyle : (style != null ? style : "");
-    }
-
-    private void setUseDescr(StaplerRequest req) {
-        String u = req.getParameter("usedescr");
-        if (u == null) {
-            urlUseDescr = null;
-        } else {
-            urlUseDescr = "on".equalsIgnoreCase(u) || "true".equalsIgnoreCase(u);
-        }
-    }
-
-    private boolean getUrlUseDescr() {
-        return urlUseDescr != null ? urlUseDescr : useDescr;
-    }
-
-    /**
-     * Sets the "hasLegend" parameter in the given StaplerRequest. If the
-     * parameter doesn't exist then a default is used.
-     */
-    private void setHasLegend(StaplerRequest req) {
-        String legend = req.getParameter("haslegend");
-        hasLegend = legend == null || "on".equalsIgnoreCase(legend)
-                || "true".equalsIgnoreCase(legend);
-    }
-
-    public boolean hasLegend() {
-        return hasLegend;
-    }
-
-    /**
-     * Sets the number of builds to plot from the "numbuilds" parameter in the
-     * given StaplerRequest. If the parameter doesn't exist or isn't an integer
-     * then a default is used.
-     */
-    private void setNumBuilds(StaplerRequest req) {
-        urlNumBuilds = req.getParameter("numbuilds");
-        if (urlNumBuilds != null) {
-            try {
-                // simply try and parse the string to see if it's a valid
-                // number, throw away the result.
-                Integer.parseInt(urlNumBuilds);
-            } catch (NumberFormatException nfe) {
-                urlNumBuilds = null;
-            }
-        }
-    }
-
-    public String getURLNumBuilds() {
-        return urlNumBuilds != null ? urlNumBuilds : numBuilds;
-    }
-
     public String getNumBuilds() {
         return numBuilds;
     }
 
-    /**
-     * Sets the description of the plot from the "description" parameter in the
-     * given StaplerRequest. If the parameter doesn't exist or isn't an string
-     * then a default is used.
-     */
-    private void setDescription(StaplerRequest req) {
-        description = req.getParameter("description");
-    }
-
     public String getDescription() {
         return description;
     }
 
-    /**
-     * Sets the right-most build number shown on the plot from the
-     * "rightbuildnum" parameter in the given StaplerRequest. If the parameter
-     * doesn't exist or isn't an integer then a default is used.
-     */
-    private void setRightBuildNum(StaplerRequest req) {
-        String build = req.getParameter("rightbuildnum");
-        if (StringUtils.isBlank(build)) {
-            rightBuildNum = Integer.MAX_VALUE;
-        } else {
-            try {
-                rightBuildNum = Integer.parseInt(build);
-            } catch (NumberFormatException nfe) {
-                LOGGER.log(Level.SEVERE, "Exception converting to integer", nfe);
-                rightBuildNum = Integer.MAX_VALUE;
-            }
-        }
-    }
-
-    private int getRightBuildNum() {
-        return rightBuildNum;
-    }
-
-    /**
-     * Sets the plot width from the "width" parameter in the given
-     * StaplerRequest. If the parameter doesn't exist or isn't an integer then a
-     * default is used.
-     */
-    private void setWidth(StaplerRequest req) {
-        String w = req.getParameter("width");
-        if (w == null) {
-            width = DEFAULT_WIDTH;
-        } else {
-            try {
-                width = Integer.parseInt(w);
-            } catch (NumberFormatException nfe) {
-                LOGGER.log(Level.SEVERE, "Exception converting to integer", nfe);
-                width = DEFAULT_WIDTH;
-            }
-        }
-    }
-
-    private int getWidth() {
-        return width;
-    }
-
-    /**
-     * Sets the plot height from the "height" parameter in the given
-     * StaplerRequest. If the parameter doesn't exist or isn't an integer then a
-     * default is used.
-     */
-    private void setHeight(StaplerRequest req) {
-        String h = req.getParameter("height");
-        if (h == null) {
-            height = DEFAULT_HEIGHT;
-        } else {
-            try {
-                height = Integer.parseInt(h);
-            } catch (NumberFormatException nfe) {
-                LOGGER.log(Level.SEVERE, "Exception converting to integer", nfe);
-                height = DEFAULT_HEIGHT;
-            }
-        }
-    }
-
-    private int getHeight() {
-        return height;
-    }
-
     public Job<?, ?> getJob() {
         return project;
     }
@@ -651,18 +473,15 @@ public class Plot implements Comparable<Plot> {
             rsp.sendRedirect2(req.getContextPath() + "/images/headless.png");
             return;
         }
-        setWidth(req);
-        setHeight(req);
-        setNumBuilds(req);
-        setRightBuildNum(req);
-        setHasLegend(req);
-        setTitle(req);
-        setStyle(req);
-        setUseDescr(req);
-        // need to force regenerate the plot in case build
-        // descriptions (used for tool tips) have changed
-        generatePlot(true);
-        ChartUtil.generateGraph(req, rsp, plot, getWidth(), getHeight());
+        PlotRenderSpec spec = PlotRenderSpec.fromRequest(req, this);
+        String key = imageCacheKey(spec);
+        PlotImageCache.Entry image = PlotImageCache.get().get(IMAGE_KEY_PREFIX + key);
+        if (image != null) {
+            image.serve(req, rsp);
+        } else {
+            PlotRenderExecutor.serve(req, rsp, key, () -> render(spec, key),
+                    entries -> entries[0]);
+        }
     }
 
     /**
@@ -679,19 +498,48 @@ public class Plot implements Comparable<Plot> {
             rsp.sendRedirect2(req.getContextPath() + "/images/headless.png");
             return;
         }
-        setWidth(req);
-        setHeight(req);
-        setNumBuilds(req);
-        setRightBuildNum(req);
-        setHasLegend(req);
-        setTitle(req);
-        setStyle(req);
-        setUseDescr(req);
-        generatePlot(false);
+        PlotRenderSpec spec = PlotRenderSpec.fromRequest(req, this);
+        String key = imageCacheKey(spec);
+        PlotImageCache.Entry map = PlotImageCache.get().get(MAP_KEY_PREFIX + key);
+        if (map != null) {
+            map.serve(req, rsp);
+        } else {
+            PlotRenderExecutor.serve(req, rsp, key, () -> render(spec, key),
+                    entries -> entries[1]);
+        }
+    }
+
+    /**
+     * Renders the plot once and caches both the encoded image and its
+     * clickable map, as the plot page always requests both.
+     *
+     * @param spec the parameters of the request
+     * @param key  the key of the rendered plot
+     * @return the image and the image map entries
+     */
+    private PlotImageCache.Entry[] render(PlotRenderSpec spec, String key) throws IOException {
+        JFreeChart chart = generatePlot(spec);
         ChartRenderingInfo info = new ChartRenderingInfo();
-        plot.createBufferedImage(getWidth(), getHeight(), info);
-        rsp.setContentType("text/plain;charset=UTF-8");
-        rsp.getWriter().println(ChartUtilities.getImageMap(getCsvFileName(), info));
+        BufferedImage image = chart.createBufferedImage(spec.getWidth(), spec.getHeight(), info);
+        String imageMap = ChartUtilities.getImageMap(getCsvFileName(), info) + "\n";
+        PlotImageCache cache = PlotImageCache.get();
+        return new PlotImageCache.Entry[]{
+                cache.put(IMAGE_KEY_PREFIX + key, ChartUtilities.encodeAsPNG(image), "image/png"),
+                cache.put(MAP_KEY_PREFIX + key, imageMap.getBytes(StandardCharsets.UTF_8),
+                        "text/plain;charset=UTF-8")
+        };
+    }
+
+    /**
+     * Returns the key of the rendered plot in the {@link PlotImageCache}, made
+     * of the plot, the version of its data and the request parameters.
+     */
+    private String imageCacheKey(PlotRenderSpec spec) {
+        return PlotRenderSpec.keyField(project.getFullName())
+                + '|' + PlotRenderSpec.keyField(getCsvFileName())
+                + '|' + PlotStore.get().getVersion(this)
+                + '|' + PlotImageCache.getGeneration(project)
+                + '|' + spec.getCacheKey();
     }
 
     /**
@@ -703,114 +551,111 @@ public class Plot implements Comparable<Plot> {
 
     /**
      * Called when a build completes. Adds the finished build to this plot. This
-     * method extracts the data for each data series from the build and saves it
-     * in the plot's CSV file.
+     * method extracts the data for each data series from the build and appends
+     * it to the plot's CSV file.
      */
     public void addBuild(Run<?, ?> run, PrintStream logger, FilePath workspace) {
+        addBuild(Collections.singletonList(this), run, logger, workspace);
+    }
+
+    /**
+     * Adds the finished build to each of the given plots. The series of all
+     * the plots are loaded with a single scan of the workspace.
+     */
+    /* package */ static void addBuild(List<Plot> plots, Run<?, ?> run, PrintStream logger,
+                                       FilePath workspace) {
+        List<Series> series = new ArrayList<>();
+        int[] ends = new int[plots.size()];
+        for (int i = 0; i < plots.size(); i++) {
+            List<Series> plotSeries = plots.get(i).getSeries();
+            if (plotSeries != null) {
+                series.addAll(plotSeries);
+            }
+            ends[i] = series.size();
+        }
+        List<List<PlotPoint>> points =
+                WorkspaceScan.loadAll(workspace, series, run.getNumber(), logger);
+        for (int i = 0; i < plots.size(); i++) {
+            plots.get(i).addBuild(run, points.subList(i > 0 ? ends[i - 1] : 0, ends[i]));
+        }
+    }
+
+    /**
+     * Adds the finished build to this plot, given the points loaded for each
+     * of its series, and appends them to the plot's CSV file.
+     */
+    private void addBuild(Run<?, ?> run, List<List<PlotPoint>> points) {
         if (project == null) {
             project = run.getParent();
         }
 
-        // load the existing plot data from disk
-        loadPlotData();
         // extract the data for each data series
-        for (Series s : getSeries()) {
-            if (s == null) {
-                continue;
-            }
-            List<PlotPoint> seriesData = s.loadSeries(workspace, run.getNumber(), logger);
+        PlotData buildPlotData = new PlotData();
+        for (List<PlotPoint> seriesData : points) {
             if (seriesData != null) {
                 for (PlotPoint point : seriesData) {
                     if (point == null) {
                         continue;
                     }
 
-                    rawPlotData.add(new String[]{
-                            point.getYvalue(),
-                            point.getLabel(),
-                            run.getNumber() + "", // convert to a string
-                            run.getTimestamp().getTimeInMillis() + "",
-                            point.getUrl()
-                    });
+                    buildPlotData.add(point.getYvalue(), point.getLabel(), run.getNumber(),
+                            run.getTimestamp().getTimeInMillis(), point.getUrl());
                 }
             }
         }
 
-        // save the updated plot data to disk
-        savePlotData();
+        if (PlotRecordQueue.ENABLED) {
+            try {
+                PlotRecordQueue.enqueue(this, run.getNumber(), buildPlotData);
+                return;
+            } catch (IOException ioe) {
+                LOGGER.log(Level.WARNING, "Failed to queue plot data, recording it now", ioe);
+            }
+        }
+
+        // append the new records to disk, then apply the retention rules
+        appendPlotData(buildPlotData);
+        if (needsCompaction(run.getNumber())) {
+            compactPlotData();
+        }
     }
 
     /**
-     * Generates the plot and stores it in the plot instance variable.
+     * Generates the plot for the given request parameters. The chart is built
+     * from the current data snapshot and local state only, so concurrent
+     * requests can render the same plot in parallel.
      *
-     * @param forceGenerate if true, force the plot to be re-generated even if the on-disk
-     *                      data hasn't changed
-     */
-    private void generatePlot(boolean forceGenerate) {
-        // LOGGER.info("Determining if we should generate plot " +
-        // getCsvFileName());
-        File csvFile = new File(project.getRootDir(), getCsvFileName());
-        if (csvFile.lastModified() == csvLastModification && plot != null && !forceGenerate) {
-            // data hasn't changed so don't regenerate the plot
-            return;
-        }
-        if (rawPlotData == null || csvFile.lastModified() > csvLastModification) {
-            // data has changed or has not been loaded so load it now
-            loadPlotData();
-        }
-        // LOGGER.info("Generating plot " + getCsvFileName());
-        csvLastModification = csvFile.lastModified();
-        PlotCategoryDataset dataset = new PlotCategoryDataset();
-        for (String[] record : rawPlotData) {
-            // record: series y-value, series label, build number, build date,
-            // url
-            int buildNum;
-            try {
-                buildNum = Integer.parseInt(record[2]);
-                if (!reportBuild(buildNum) || buildNum > getRightBuildNum()) {
-                    continue; // skip this record
-                }
-            } catch (NumberFormatException nfe) {
-                LOGGER.log(Level.SEVERE, "Exception converting to integer", nfe);
-                continue; // skip this record all together
+     * @param spec the parameters of the request
+     */
+    /* package */ JFreeChart generatePlot(PlotRenderSpec spec) {
+        PlotData plotData = getPlotData();
+        int records = plotData.size();
+        int buildsNumber = parseNumBuilds(spec.getNumBuilds());
+        PlotCategoryDataset dataset = new PlotCategoryDataset(0,
+                shownBuilds(plotData, spec.getRightBuildNum(), buildsNumber));
+        IntPredicate reportedBuilds = reportedBuilds();
+        // records are grouped by build, so each build gets a single column label
+        Label columnXLabel = null;
+        for (int i = 0; i < records; i++) {
+            int buildNum = plotData.getBuildNumber(i);
+            if (!reportedBuilds.test(buildNum) || buildNum > spec.getRightBuildNum()) {
+                continue; // skip this record
             }
-            Number value;
-            try {
-                value = Integer.parseInt(record[0]);
-            } catch (NumberFormatException nfe) {
-                try {
-                    value = Double.parseDouble(record[0]);
-                } catch (NumberFormatException nfe2) {
-                    LOGGER.log(Level.SEVERE, "Exception converting to number", nfe2);
-                    continue; // skip this record all together
-                }
-            }
-            Label columnXLabel = getUrlUseDescr()
-                    ? new Label(record[2], record[3], descriptionForBuild(buildNum))
-                    : new Label(record[2], record[3]);
-            String url = null;
-            if (record.length >= 5) {
-                url = record[4];
+            double value = plotData.getValue(i);
+            if (Double.isNaN(value)) {
+                continue; // skip this record all together
             }
-            String rowSeries = record[1];
-            dataset.setValue(value, url, rowSeries, columnXLabel);
-        }
-
-        String builds = getURLNumBuilds();
-        int buildsNumber;
-        if (StringUtils.isBlank(builds)) {
-            buildsNumber = Integer.MAX_VALUE;
-        } else {
-            try {
-                buildsNumber = Integer.parseInt(builds);
-            } catch (NumberFormatException nfe) {
-                LOGGER.log(Level.SEVERE, "Exception converting to integer", nfe);
-                buildsNumber = Integer.MAX_VALUE;
+            if (columnXLabel == null || columnXLabel.buildNum != buildNum) {
+                long buildTime = plotData.getTimestamp(i);
+                columnXLabel = spec.getUseDescr()
+                        ? new Label(buildNum, buildTime, descriptionForBuild(buildNum))
+                        : new Label(buildNum, buildTime);
             }
+            dataset.setValue(value, plotData.getUrl(i), plotData.getLabel(i), columnXLabel);
         }
 
         dataset.clipDataset(buildsNumber);
-        plot = createChart(dataset);
+        JFreeChart plot = createChart(dataset, spec);
         CategoryPlot categoryPlot = (CategoryPlot) plot.getPlot();
         categoryPlot.setDomainGridlinePaint(Color.black);
         categoryPlot.setRangeGridlinePaint(Color.black);
@@ -859,7 +704,7 @@ public class Plot implements Comparable<Plot> {
                 Messages.Plot_Build() + " {1}: {2}", NumberFormat.getInstance()));
         renderer.setBaseItemURLGenerator(new PointURLGenerator());
         if (renderer instanceof LineAndShapeRenderer) {
-            String s = getUrlStyle();
+            String s = spec.getStyle();
             LineAndShapeRenderer lasRenderer = (LineAndShapeRenderer) renderer;
             if ("lineSimple".equalsIgnoreCase(s)) {
                 lasRenderer.setShapesVisible(false);
@@ -867,45 +712,48 @@ public class Plot implements Comparable<Plot> {
                 lasRenderer.setShapesVisible(true);
             }
         }
+        return plot;
     }
 
     /**
-     * Creates a Chart of the style indicated by getUrlStyle() using the given
+     * Creates a Chart of the style indicated by the request using the given
      * dataset. Defaults to using createLineChart.
      */
-    private JFreeChart createChart(PlotCategoryDataset dataset) {
-        switch (ChartStyle.forName(getUrlStyle())) {
+    private JFreeChart createChart(PlotCategoryDataset dataset, PlotRenderSpec spec) {
+        String chartTitle = spec.getTitle();
+        boolean legend = spec.hasLegend();
+        switch (ChartStyle.forName(spec.getStyle())) {
             case AREA:
-                return ChartFactory.createAreaChart(getURLTitle(), null,
-                        getYaxis(), dataset, PlotOrientation.VERTICAL, hasLegend(), true, false);
+                return ChartFactory.createAreaChart(chartTitle, null,
+                        getYaxis(), dataset, PlotOrientation.VERTICAL, legend, true, false);
             case BAR:
-                return ChartFactory.createBarChart(getURLTitle(), null,
-                        getYaxis(), dataset, PlotOrientation.VERTICAL, hasLegend(), true, false);
+                return ChartFactory.createBarChart(chartTitle, null,
+                        getYaxis(), dataset, PlotOrientation.VERTICAL, legend, true, false);
             case BAR_3D:
-                return ChartFactory.createBarChart3D(getURLTitle(), null,
-                        getYaxis(), dataset, PlotOrientation.VERTICAL, hasLegend(), true, false);
+                return ChartFactory.createBarChart3D(chartTitle, null,
+                        getYaxis(), dataset, PlotOrientation.VERTICAL, legend, true, false);
             case LINE_3D:
-                return ChartFactory.createLineChart3D(getURLTitle(), null,
-                        getYaxis(), dataset, PlotOrientation.VERTICAL, hasLegend(), true, false);
+                return ChartFactory.createLineChart3D(chartTitle, null,
+                        getYaxis(), dataset, PlotOrientation.VERTICAL, legend, true, false);
             case LINE_SIMPLE:
-                return ChartFactory.createLineChart(getURLTitle(), null,
-                        getYaxis(), dataset, PlotOrientation.VERTICAL, hasLegend(), true, false);
+                return ChartFactory.createLineChart(chartTitle, null,
+                        getYaxis(), dataset, PlotOrientation.VERTICAL, legend, true, false);
             case STACKED_AREA:
-                return ChartFactory.createStackedAreaChart(getURLTitle(), null,
-                        getYaxis(), dataset, PlotOrientation.VERTICAL, hasLegend(), true, false);
+                return ChartFactory.createStackedAreaChart(chartTitle, null,
+                        getYaxis(), dataset, PlotOrientation.VERTICAL, legend, true, false);
             case STACKED_BAR:
-                return ChartFactory.createStackedBarChart(getURLTitle(), null,
-                        getYaxis(), dataset, PlotOrientation.VERTICAL, hasLegend(), true, false);
+                return ChartFactory.createStackedBarChart(chartTitle, null,
+                        getYaxis(), dataset, PlotOrientation.VERTICAL, legend, true, false);
             case STACKED_BAR_3D:
-                return ChartFactory.createStackedBarChart3D(getURLTitle(), null,
-                        getYaxis(), dataset, PlotOrientation.VERTICAL, hasLegend(), true, false);
+                return ChartFactory.createStackedBarChart3D(chartTitle, null,
+                        getYaxis(), dataset, PlotOrientation.VERTICAL, legend, true, false);
             case WATERFALL:
-                return ChartFactory.createWaterfallChart(getURLTitle(), null,
-                        getYaxis(), dataset, PlotOrientation.VERTICAL, hasLegend(), true, false);
+                return ChartFactory.createWaterfallChart(chartTitle, null,
+                        getYaxis(), dataset, PlotOrientation.VERTICAL, legend, true, false);
             case LINE:
             default:
-                return ChartFactory.createLineChart(getURLTitle(), null,
-                        getYaxis(), dataset, PlotOrientation.VERTICAL, hasLegend(), true, false);
+                return ChartFactory.createLineChart(chartTitle, null,
+                        getYaxis(), dataset, PlotOrientation.VERTICAL, legend, true, false);
         }
     }
 
@@ -914,100 +762,133 @@ public class Plot implements Comparable<Plot> {
      * build number.
      */
     private String descriptionForBuild(int buildNum) {
-        Run r = project.getBuildByNumber(buildNum);
-        if (r != null) {
-            String tip = r.getTruncatedDescription();
-            if (tip != null) {
-                return tip.replaceAll("<p> *|<br> *", ", ");
+        return PlotBuildCache.getDescription(project, buildNum);
+    }
+
+    /**
+     * Returns the plot data, reloading it from the {@link PlotStore} when it
+     * changed since it was last loaded.
+     */
+    private PlotData getPlotData() {
+        // read the version before the data, so that a change made while
+        // reading is picked up by the next request
+        long version = PlotStore.get().getVersion(this);
+        DataSnapshot snapshot = dataSnapshot;
+        if (snapshot == null || snapshot.version != version) {
+            if (!compactionScheduled) {
+                // drop the records of builds deleted while nobody was watching
+                compactionScheduled = true;
+                PlotCompactor.schedule(this);
             }
+            snapshot = new DataSnapshot(version, readPlotData());
+            dataSnapshot = snapshot;
         }
-        return null;
+        return snapshot.data;
     }
 
     /**
-     * Loads the plot data from the CSV file on disk. The CSV file is stored in
-     * the projects root directory. The data is stored in the rawPlotData
-     * instance variable.
+     * Reads all records of the plot data.
      */
-    private void loadPlotData() {
-        rawPlotData = new ArrayList<>();
-        // load existing plot file
-        File plotFile = new File(project.getRootDir(), getCsvFileName());
-        if (!plotFile.exists()) {
-            return;
-        }
-        CSVReader reader = null;
-        rawPlotData = new ArrayList<>();
+    /* package */ PlotData readPlotData() {
         try {
-            reader = new CSVReader(new InputStreamReader(new FileInputStream(plotFile),
-                    Charset.defaultCharset().name()));
-            // throw away 2 header lines
-            reader.readNext();
-            reader.readNext();
-            // read each line of the CSV file and add to rawPlotData
-            String[] nextLine;
-            while ((nextLine = reader.readNext()) != null) {
-                rawPlotData.add(nextLine);
-            }
-        } catch (CsvValidationException | IOException ioe) {
+            return PlotStore.get().read(this, Integer.MIN_VALUE, Integer.MAX_VALUE, null);
+        } catch (IOException ioe) {
             LOGGER.log(Level.SEVERE, "Exception reading plot file", ioe);
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    LOGGER.log(Level.SEVERE, "Failed to close plot reader", e);
-                }
-            }
+            return new PlotData();
         }
     }
 
     /**
-     * Saves the plot data to the CSV file on disk. The CSV file is stored in
-     * the projects root directory. The data is read from the rawPlotData
-     * instance variable.
+     * Appends the given records to the plot data, in a single write with the
+     * records of the builds of this plot finishing at the same time.
      */
-    private void savePlotData() {
-        File plotFile = new File(project.getRootDir(), getCsvFileName());
-        CSVWriter writer = null;
+    private void appendPlotData(PlotData records) {
         try {
-            writer = new CSVWriter(new OutputStreamWriter(new FileOutputStream(plotFile),
-                    Charset.defaultCharset().name()));
-            // write 2 header lines
-            String[] header1 = new String[]{
-                    Messages.Plot_Title(),
-                    this.getTitle()
-            };
-            String[] header2 = new String[]{
-                    Messages.Plot_Value(),
-                    Messages.Plot_SeriesLabel(), Messages.Plot_BuildNumber(),
-                    Messages.Plot_BuildDate(), Messages.Plot_URL()
-            };
-            writer.writeNext(header1);
-            writer.writeNext(header2);
-            // write each entry of rawPlotData to a new line in the CSV file
-            for (String[] entry : rawPlotData) {
-                if (reportBuild(Integer.parseInt(entry[2]))) {
-                    writer.writeNext(entry);
-                }
-            }
+            PlotAppendQueue.append(this, records);
         } catch (IOException ioe) {
-            LOGGER.log(Level.SEVERE, "Exception saving plot file", ioe);
+            LOGGER.log(Level.SEVERE, "Exception appending to plot file", ioe);
+        }
+    }
+
+    /**
+     * Decides whether the retention rules should be applied to the plot data
+     * after recording the given build. Compaction runs every
+     * {@link #COMPACTION_INTERVAL} builds; the records of deleted builds are
+     * dropped by the {@link PlotCompactor} and older records are skipped by
+     * readers until then.
+     */
+    /* package */ boolean needsCompaction(int buildNumber) {
+        return buildNumber % COMPACTION_INTERVAL == 0;
+    }
+
+    /**
+     * Drops the records of builds that should no longer be part of the plot.
+     */
+    /* package */ void compactPlotData() {
+        Lock lock = PlotStore.getLock(this);
+        lock.lock();
+        try {
+            dataSnapshot = null;
+            PlotStore.get().retain(this, this::reportBuild);
+        } catch (IOException ioe) {
+            LOGGER.log(Level.SEVERE, "Exception compacting plot file", ioe);
         } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {
-                    LOGGER.log(Level.SEVERE, "Failed to close plot reader", e);
-                }
-            }
+            lock.unlock();
         }
     }
 
     /**
-     * @return true if the build should be part of the graph.
+     * Parses the number of builds to show, all builds if it's blank or not a
+     * number.
      */
-    /* package */boolean reportBuild(int buildNumber) {
+    private static int parseNumBuilds(String builds) {
+        if (StringUtils.isBlank(builds)) {
+            return Integer.MAX_VALUE;
+        }
+        try {
+            return Integer.parseInt(builds);
+        } catch (NumberFormatException nfe) {
+            LOGGER.log(Level.SEVERE, "Exception converting to integer", nfe);
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Returns an upper bound of the number of builds of the data shown on the
+     * graph: those within the configured number of builds, up to the right
+     * most build and at most the requested number of builds.
+     */
+    /* package */ int shownBuilds(PlotData plotData, int rightBuildNum, int buildsNumber) {
+        int records = plotData.size();
+        if (records == 0) {
+            return 0;
+        }
+        int first = plotData.getBuildNumber(0);
+        int last = plotData.getBuildNumber(records - 1);
+        long from = Math.max(Math.min(first, last), (long) firstReportedBuild());
+        long to = Math.min(Math.max(first, last), (long) rightBuildNum);
+        long range = Math.max(0, to - from + 1);
+        return (int) Math.min(Math.min(records, range), Math.max(buildsNumber, 0));
+    }
+
+    /**
+     * Returns a filter accepting the builds that should be part of the graph.
+     * Unlike {@link #reportBuild(int)} it doesn't look builds up: it only
+     * rejects builds out of the configured number of builds and builds deleted
+     * since the last compaction.
+     */
+    /* package */ IntPredicate reportedBuilds() {
+        int firstBuild = firstReportedBuild();
+        BitSet deleted = keepRecords ? null : PlotCompactor.getPendingDeletions(project);
+        return buildNumber -> buildNumber >= firstBuild
+                && (deleted == null || buildNumber < 0 || !deleted.get(buildNumber));
+    }
+
+    /**
+     * Returns the number of the oldest build within the configured number of
+     * builds.
+     */
+    private int firstReportedBuild() {
         int buildsNumber;
         try {
             buildsNumber = Integer.parseInt(this.numBuilds);
@@ -1015,8 +896,14 @@ public class Plot implements Comparable<Plot> {
             // Report all builds
             buildsNumber = Integer.MAX_VALUE;
         }
+        return project.getNextBuildNumber() - buildsNumber;
+    }
 
-        return buildNumber >= project.getNextBuildNumber() - buildsNumber
-                && (keepRecords || project.getBuildByNumber(buildNumber) != null);
+    /**
+     * @return true if the build should be part of the graph.
+     */
+    /* package */boolean reportBuild(int buildNumber) {
+        return buildNumber >= firstReportedBuild()
+                && (keepRecords || PlotBuildCache.exists(project, buildNumber));
     }
 }
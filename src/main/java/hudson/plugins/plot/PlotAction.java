@@ -52,6 +52,13 @@ public class PlotAction implements Action, StaplerProxy {
         return Messages.Plot_UrlName();
     }
 
+    /**
+     * Returns the plots of the job.
+     */
+    public List<Plot> getPlots() {
+        return publisher.getPlots();
+    }
+
     // called from PlotAction/index.jelly
     public boolean hasPlots() throws IOException {
         return CollectionUtils.isNotEmpty(publisher.getPlots());
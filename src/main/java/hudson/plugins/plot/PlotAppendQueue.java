@@ -0,0 +1,93 @@
+package hudson.plugins.plot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Appends the records of concurrent builds of a plot with a single write.
+ * <p>
+ * Each build queues its records, then waits for the lock of the plot. The
+ * first build to get the lock appends the records of all the builds queued
+ * so far at once; the builds it wrote for find their records written when
+ * they get the lock in turn, and return right away. Plots that share a lock
+ * stripe but not a file still write separately.
+ */
+final class PlotAppendQueue {
+    private static final ConcurrentMap<String, Queue<Request>> QUEUES =
+            new ConcurrentHashMap<>();
+
+    private PlotAppendQueue() {
+    }
+
+    /**
+     * Appends the given records to the data of the plot, along with the
+     * records queued by concurrent builds.
+     *
+     * @throws IOException if the write that included these records failed
+     */
+    static void append(Plot plot, PlotData records) throws IOException {
+        String key = PlotStore.getKey(plot);
+        Request request = new Request(records);
+        Queue<Request> queue = QUEUES.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>());
+        queue.add(request);
+
+        Lock lock = PlotStore.getLock(plot);
+        lock.lock();
+        try {
+            if (!request.done) {
+                write(plot, queue);
+            }
+            // forget idle plots; a build that still holds this queue writes it itself
+            if (queue.isEmpty()) {
+                QUEUES.remove(key, queue);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (request.failure != null) {
+            throw new IOException("Failed to append plot data", request.failure);
+        }
+    }
+
+    /**
+     * Writes the records of all the requests of the queue, the calling
+     * thread holding the lock of the plot.
+     */
+    private static void write(Plot plot, Queue<Request> queue) {
+        List<Request> batch = new ArrayList<>();
+        PlotData merged = new PlotData();
+        for (Request next = queue.poll(); next != null; next = queue.poll()) {
+            batch.add(next);
+            merged.addAll(next.records);
+        }
+        IOException failure = null;
+        try {
+            PlotStore.get().append(plot, merged);
+        } catch (IOException e) {
+            failure = e;
+        }
+        for (Request written : batch) {
+            written.failure = failure;
+            written.done = true;
+        }
+    }
+
+    /**
+     * The records of a build, guarded by the lock of the plot.
+     */
+    private static final class Request {
+        private final PlotData records;
+        private boolean done;
+        private IOException failure;
+
+        Request(PlotData records) {
+            this.records = records;
+        }
+    }
+}
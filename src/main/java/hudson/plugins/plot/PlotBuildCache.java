@@ -0,0 +1,240 @@
+package hudson.plugins.plot;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.Saveable;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.listeners.SaveableListener;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import jenkins.model.lazy.LazyBuildMixIn;
+
+/**
+ * Remembers which builds of a job exist and what their descriptions are, so
+ * that rendering a plot doesn't load a build record for every data point.
+ * <p>
+ * Existence is kept as a bitmap of build numbers per job and is looked up
+ * without loading the build when the job loads its builds lazily. Both caches
+ * are kept up to date by run and saveable listeners, which also make the
+ * {@link PlotImageCache} entries of the job stale when a build completes, is
+ * deleted or gets a new description. The caches of deleted and renamed jobs
+ * are dropped by an item listener.
+ */
+public final class PlotBuildCache {
+    /**
+     * Line breaks in build descriptions, which are shown as commas.
+     */
+    private static final Pattern DESCRIPTION_BREAKS = Pattern.compile("<p> *|<br> *");
+
+    /**
+     * The cached builds of each job, by full name.
+     */
+    private static final Map<String, JobBuilds> JOBS = new ConcurrentHashMap<>();
+
+    private PlotBuildCache() {
+    }
+
+    /**
+     * Returns true if the given build of the job exists.
+     */
+    static boolean exists(Job<?, ?> job, int buildNumber) {
+        if (buildNumber < 1) {
+            return false;
+        }
+        JobBuilds builds = builds(job);
+        long generation;
+        synchronized (builds) {
+            if (builds.known.get(buildNumber)) {
+                return builds.existing.get(buildNumber);
+            }
+            generation = builds.generation;
+        }
+        boolean exists = lookup(job, buildNumber);
+        synchronized (builds) {
+            if (builds.generation == generation) {
+                builds.known.set(buildNumber);
+                builds.existing.set(buildNumber, exists);
+            }
+        }
+        return exists;
+    }
+
+    /**
+     * Returns a trimmed description string for the given build of the job, or
+     * null if the build doesn't exist or has no description.
+     */
+    static String getDescription(Job<?, ?> job, int buildNumber) {
+        JobBuilds builds = builds(job);
+        long generation;
+        synchronized (builds) {
+            Optional<String> description = builds.descriptions.get(buildNumber);
+            if (description != null) {
+                return description.orElse(null);
+            }
+            generation = builds.generation;
+        }
+        Run<?, ?> r = job.getBuildByNumber(buildNumber);
+        String tip = r != null ? trimDescription(r) : null;
+        synchronized (builds) {
+            if (builds.generation == generation) {
+                builds.descriptions.put(buildNumber, Optional.ofNullable(tip));
+            }
+        }
+        return tip;
+    }
+
+    private static String trimDescription(Run<?, ?> run) {
+        String tip = run.getTruncatedDescription();
+        return tip != null ? DESCRIPTION_BREAKS.matcher(tip).replaceAll(", ") : null;
+    }
+
+    private static JobBuilds builds(Job<?, ?> job) {
+        return JOBS.computeIfAbsent(job.getFullName(), name -> new JobBuilds());
+    }
+
+    private static boolean lookup(Job<?, ?> job, int buildNumber) {
+        if (job instanceof LazyBuildMixIn.LazyLoadingJob) {
+            // checks the build directories without loading the build
+            return ((LazyBuildMixIn.LazyLoadingJob<?, ?>) job).getLazyBuildMixIn()
+                    ._getRuns().runExists(buildNumber);
+        }
+        return job.getBuildByNumber(buildNumber) != null;
+    }
+
+    private static void started(Run<?, ?> run) {
+        JobBuilds builds = builds(run.getParent());
+        synchronized (builds) {
+            builds.generation++;
+            builds.known.set(run.getNumber());
+            builds.existing.set(run.getNumber());
+        }
+    }
+
+    private static void deleted(Run<?, ?> run) {
+        JobBuilds builds = builds(run.getParent());
+        synchronized (builds) {
+            builds.generation++;
+            builds.known.set(run.getNumber());
+            builds.existing.clear(run.getNumber());
+            builds.descriptions.remove(run.getNumber());
+        }
+    }
+
+    /**
+     * Updates the cached description of a saved build.
+     *
+     * @return true if the description is new or changed
+     */
+    private static boolean saved(Run<?, ?> run) {
+        String tip = trimDescription(run);
+        JobBuilds builds = builds(run.getParent());
+        synchronized (builds) {
+            Optional<String> previous = builds.descriptions.put(run.getNumber(),
+                    Optional.ofNullable(tip));
+            if (previous != null && previous.equals(Optional.ofNullable(tip))) {
+                return false;
+            }
+            builds.generation++;
+            return true;
+        }
+    }
+
+    /**
+     * Drops the cached builds of the item with the given full name and of the
+     * jobs it contains.
+     */
+    static void forget(String fullName) {
+        JOBS.keySet().removeIf(name -> isWithin(name, fullName));
+        PlotImageCache.forget(fullName);
+    }
+
+    /**
+     * Returns true if the given job full name is the given item or one of
+     * its descendants.
+     */
+    static boolean isWithin(String name, String fullName) {
+        return name.equals(fullName) || name.startsWith(fullName + '/');
+    }
+
+    /**
+     * The cached builds of a single job.
+     */
+    private static final class JobBuilds {
+        /**
+         * Incremented on every change, so that lookups that raced with a
+         * change are not cached.
+         */
+        private long generation;
+
+        /**
+         * The build numbers whose existence is known.
+         */
+        private final BitSet known = new BitSet();
+
+        /**
+         * The build numbers that are known to exist.
+         */
+        private final BitSet existing = new BitSet();
+
+        private final Map<Integer, Optional<String>> descriptions = new HashMap<>();
+    }
+
+    @Extension
+    public static final class RunListenerImpl extends RunListener<Run<?, ?>> {
+        @Override
+        public void onStarted(Run<?, ?> run, TaskListener listener) {
+            // a running build has no plot data yet, so the plots are unchanged
+            started(run);
+        }
+
+        @Override
+        public void onCompleted(Run<?, ?> run, TaskListener listener) {
+            PlotImageCache.invalidate(run.getParent());
+        }
+
+        @Override
+        public void onDeleted(Run<?, ?> run) {
+            deleted(run);
+            PlotImageCache.invalidate(run.getParent());
+        }
+    }
+
+    @Extension
+    public static final class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Run) {
+                Run<?, ?> run = (Run<?, ?>) o;
+                if (saved(run)) {
+                    PlotImageCache.invalidate(run.getParent());
+                }
+            } else if (o instanceof Job) {
+                Job<?, ?> job = (Job<?, ?>) o;
+                JOBS.remove(job.getFullName());
+                PlotImageCache.invalidate(job);
+            }
+        }
+    }
+
+    @Extension
+    public static final class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onDeleted(Item item) {
+            forget(item.getFullName());
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            forget(oldFullName);
+        }
+    }
+}
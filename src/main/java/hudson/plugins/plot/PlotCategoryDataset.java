@@ -6,6 +6,8 @@
 package hudson.plugins.plot;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,21 +18,19 @@ import org.jfree.data.general.AbstractDataset;
  * A {@link CategoryDataset} implementation that stores numeric data points and
  * corresponding URLs. This data structure is basically a table with row and
  * column names (keys).
+ * <p>
+ * Row and column keys are indexed with hash maps and the values are kept in
+ * dense primitive arrays, with {@link Double#NaN} marking missing cells.
+ * Columns are kept in the order they were added and only sorted when the
+ * dataset is queried; adding columns in ascending order, as the build
+ * columns of a plot are, never requires sorting.
  *
  * @author Nigel Daley
  */
 public class PlotCategoryDataset extends AbstractDataset implements CategoryDataset {
     private static final long serialVersionUID = 9215482265757674967L;
 
-    private static class DataElement {
-        private final Number number;
-        private final String url;
-
-        DataElement(Number n, String u) {
-            this.number = n;
-            this.url = u;
-        }
-    }
+    private static final int INITIAL_CAPACITY = 16;
 
     /**
      * The row keys
@@ -38,14 +38,46 @@ public class PlotCategoryDataset extends AbstractDataset implements CategoryData
     private transient List<Comparable> rowKeys;
 
     /**
-     * The column keys
+     * The index of each row key
+     */
+    private transient Map<Comparable, Integer> rowIndexes;
+
+    /**
+     * The column keys, in the order they were added
      */
     private transient List<Comparable> columnKeys;
 
     /**
-     * The row data
+     * The storage slot of each column key
+     */
+    private transient Map<Comparable, Integer> columnSlots;
+
+    /**
+     * Whether the column keys were added in ascending order
+     */
+    private transient boolean columnsInOrder;
+
+    /**
+     * The column keys in ascending order and the storage slot of each of
+     * them, when they were not added in order; null until sorted
+     */
+    private transient List<Comparable> sortedColumnKeys;
+    private transient int[] sortedSlots;
+
+    /**
+     * The number of columns the storage can hold
+     */
+    private transient int columnCapacity;
+
+    /**
+     * The row data, indexed by row and column storage slot
      */
-    private transient List<Map<Comparable, DataElement>> data;
+    private transient double[][] values;
+
+    /**
+     * The URLs, indexed by row and column storage slot
+     */
+    private transient String[][] urls;
 
     /**
      * The max number of builds to plot
@@ -56,9 +88,25 @@ public class PlotCategoryDataset extends AbstractDataset implements CategoryData
      * Creates a new empty instance.
      */
     public PlotCategoryDataset() {
-        this.rowKeys = new ArrayList<>();
-        this.columnKeys = new ArrayList<>();
-        this.data = new ArrayList<>();
+        this(INITIAL_CAPACITY, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates a new empty instance sized for the given number of rows and
+     * columns, to avoid growing the storage while the data is loaded.
+     *
+     * @param rowCapacity    the expected number of rows (series)
+     * @param columnCapacity the expected number of columns (builds)
+     */
+    public PlotCategoryDataset(int rowCapacity, int columnCapacity) {
+        this.rowKeys = new ArrayList<>(Math.max(rowCapacity, 1));
+        this.rowIndexes = new HashMap<>();
+        this.columnKeys = new ArrayList<>(Math.max(columnCapacity, 1));
+        this.columnSlots = new HashMap<>();
+        this.columnsInOrder = true;
+        this.columnCapacity = Math.max(columnCapacity, 1);
+        this.values = new double[Math.max(rowCapacity, 1)][];
+        this.urls = new String[Math.max(rowCapacity, 1)][];
     }
 
     /**
@@ -72,20 +120,30 @@ public class PlotCategoryDataset extends AbstractDataset implements CategoryData
         // Rows that contain no data when the columns are truncated are
         // removed here so that they don't show up in plot legends.
         if (getColumnCount() > 0) {
-            Comparable lowColumn = getColumnKey(0);
-            for (int i = data.size() - 1; i >= 0; i--) {
-                Map<Comparable, DataElement> row = data.get(i);
+            int rowCount = rowKeys.size();
+            int kept = 0;
+            for (int row = 0; row < rowCount; row++) {
                 boolean removeRow = true;
-                for (Comparable column : row.keySet()) {
-                    if (column.compareTo(lowColumn) >= 0) {
+                for (int column = firstVisibleColumn(); column < columnKeys.size(); column++) {
+                    if (!Double.isNaN(values[row][slotOf(column)])) {
                         removeRow = false;
                         break;
                     }
                 }
-                if (removeRow) {
-                    // LOGGER.info("Removing row " + data.indexOf(row));
-                    data.remove(i);
-                    rowKeys.remove(i);
+                if (!removeRow) {
+                    rowKeys.set(kept, rowKeys.get(row));
+                    values[kept] = values[row];
+                    urls[kept] = urls[row];
+                    kept++;
+                }
+            }
+            if (kept < rowCount) {
+                rowKeys.subList(kept, rowCount).clear();
+                Arrays.fill(values, kept, rowCount, null);
+                Arrays.fill(urls, kept, rowCount, null);
+                rowIndexes.clear();
+                for (int row = 0; row < kept; row++) {
+                    rowIndexes.put(rowKeys.get(row), row);
                 }
             }
         }
@@ -103,21 +161,8 @@ public class PlotCategoryDataset extends AbstractDataset implements CategoryData
 
     @Override
     public Number getValue(int row, int column) {
-        // LOGGER.info("("+row+","+column+")");
-        if (data.get(row) == null) {
-            return null;
-        }
-        // make column relative to maxColumns
-        int newColumn = column;
-        if (columnKeys.size() > maxColumns) {
-            newColumn = columnKeys.size() - maxColumns + column;
-        }
-        Comparable columnKey = columnKeys.get(newColumn);
-        DataElement element = data.get(row).get(columnKey);
-        if (element == null) {
-            return null;
-        }
-        return element.number;
+        double value = values[row][slotOf(toSortedColumn(column))];
+        return Double.isNaN(value) ? null : value;
     }
 
     @Override
@@ -127,7 +172,8 @@ public class PlotCategoryDataset extends AbstractDataset implements CategoryData
 
     @Override
     public int getRowIndex(Comparable key) {
-        return rowKeys.indexOf(key);
+        Integer index = rowIndexes.get(key);
+        return index != null ? index : -1;
     }
 
     @Override
@@ -137,24 +183,22 @@ public class PlotCategoryDataset extends AbstractDataset implements CategoryData
 
     @Override
     public Comparable getColumnKey(int column) {
-        // make column relative to maxColumns
-        int newColumn = column;
-        if (columnKeys.size() > maxColumns) {
-            newColumn = columnKeys.size() - maxColumns + column;
-        }
-        return columnKeys.get(newColumn);
+        return getSortedColumnKeys().get(toSortedColumn(column));
     }
 
     @Override
     public int getColumnIndex(Comparable key) {
-        return columnKeys.indexOf(key);
+        if (!columnSlots.containsKey(key)) {
+            return -1;
+        }
+        int index = indexOfColumn(key) - firstVisibleColumn();
+        return index >= 0 ? index : -1;
     }
 
     @Override
     public List getColumnKeys() {
-        int firstIndex = Math.max(0, columnKeys.size() - maxColumns);
-        int lastIndex = Math.max(0, columnKeys.size());
-        return columnKeys.subList(firstIndex, lastIndex);
+        List<Comparable> keys = getSortedColumnKeys();
+        return keys.subList(firstVisibleColumn(), keys.size());
     }
 
     /**
@@ -166,16 +210,13 @@ public class PlotCategoryDataset extends AbstractDataset implements CategoryData
      */
     @Override
     public Number getValue(Comparable rowKey, Comparable columnKey) {
-        // LOGGER.info("("+rowKey+","+columnKey+")");
-        int rowIndex = rowKeys.indexOf(rowKey);
-        if (rowIndex == -1 || data.get(rowIndex) == null) {
+        Integer row = rowIndexes.get(rowKey);
+        Integer slot = columnSlots.get(columnKey);
+        if (row == null || slot == null) {
             return null;
         }
-        DataElement element = (DataElement) data.get(rowIndex).get(columnKey);
-        if (element == null) {
-            return null;
-        }
-        return element.number;
+        double value = values[row][slot];
+        return Double.isNaN(value) ? null : value;
     }
 
     /**
@@ -186,21 +227,7 @@ public class PlotCategoryDataset extends AbstractDataset implements CategoryData
      * @return the URL
      */
     public String getUrl(int row, int column) {
-        // LOGGER.info("("+row+","+column+")");
-        if (data.get(row) == null) {
-            return null;
-        }
-        // make column relative to maxColumns
-        int newColumn = column;
-        if (columnKeys.size() > maxColumns) {
-            newColumn = columnKeys.size() - maxColumns + column;
-        }
-        Comparable columnKey = columnKeys.get(newColumn);
-        DataElement element = data.get(row).get(columnKey);
-        if (element == null) {
-            return null;
-        }
-        return element.url;
+        return urls[row][slotOf(toSortedColumn(column))];
     }
 
     /**
@@ -212,29 +239,111 @@ public class PlotCategoryDataset extends AbstractDataset implements CategoryData
      * @param columnKey the column key
      */
     public void setValue(Number value, String url, Comparable rowKey, Comparable columnKey) {
-        // LOGGER.info("Data point:"+value+","+url+","+rowKey+","+columnKey);
-        int rowIndex = rowKeys.indexOf(rowKey);
-        if (rowIndex == -1) {
-            rowKeys.add(rowKey);
-            rowIndex = rowKeys.size() - 1;
-            data.add(new HashMap<Comparable, DataElement>());
+        Integer row = rowIndexes.get(rowKey);
+        if (row == null) {
+            row = addRow(rowKey);
         }
-        if (!columnKeys.contains(columnKey)) {
-            boolean added = false;
-            for (int i = 0; i < columnKeys.size(); i++) {
-                Comparable key = columnKeys.get(i);
-                if (key.compareTo(columnKey) >= 0) {
-                    columnKeys.add(i, columnKey);
-                    added = true;
-                    break;
-                }
+        Integer slot = columnSlots.get(columnKey);
+        if (slot == null) {
+            slot = addColumn(columnKey);
+        }
+        values[row][slot] = value != null ? value.doubleValue() : Double.NaN;
+        urls[row][slot] = url;
+    }
+
+    private int addRow(Comparable rowKey) {
+        int row = rowKeys.size();
+        if (row == values.length) {
+            int capacity = row + (row >> 1) + 1;
+            values = Arrays.copyOf(values, capacity);
+            urls = Arrays.copyOf(urls, capacity);
+        }
+        values[row] = new double[columnCapacity];
+        Arrays.fill(values[row], Double.NaN);
+        urls[row] = new String[columnCapacity];
+        rowKeys.add(rowKey);
+        rowIndexes.put(rowKey, row);
+        return row;
+    }
+
+    private int addColumn(Comparable columnKey) {
+        int slot = columnKeys.size();
+        if (slot == columnCapacity) {
+            columnCapacity = slot + (slot >> 1) + 1;
+            for (int row = 0; row < rowKeys.size(); row++) {
+                values[row] = Arrays.copyOf(values[row], columnCapacity);
+                Arrays.fill(values[row], slot, columnCapacity, Double.NaN);
+                urls[row] = Arrays.copyOf(urls[row], columnCapacity);
             }
-            if (!added) {
-                columnKeys.add(columnKey);
+        }
+        // columns added in ascending order, like the builds of a plot, never need sorting
+        columnsInOrder = columnsInOrder
+                && (slot == 0 || columnKeys.get(slot - 1).compareTo(columnKey) < 0);
+        sortedColumnKeys = null;
+        sortedSlots = null;
+        columnKeys.add(columnKey);
+        columnSlots.put(columnKey, slot);
+        return slot;
+    }
+
+    private List<Comparable> getSortedColumnKeys() {
+        if (columnsInOrder) {
+            return columnKeys;
+        }
+        if (sortedColumnKeys == null) {
+            List<Comparable> sorted = new ArrayList<>(columnKeys);
+            Collections.sort(sorted);
+            int[] slots = new int[sorted.size()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = columnSlots.get(sorted.get(i));
             }
+            sortedColumnKeys = sorted;
+            sortedSlots = slots;
         }
-        // LOGGER.info("columnKeys.size():"+columnKeys.size());
-        DataElement element = new DataElement(value, url);
-        data.get(rowIndex).put(columnKey, element);
+        return sortedColumnKeys;
+    }
+
+    /**
+     * Returns the storage slot of the column at the given position in
+     * ascending key order.
+     */
+    private int slotOf(int sortedColumn) {
+        if (columnsInOrder) {
+            return sortedColumn;
+        }
+        getSortedColumnKeys();
+        return sortedSlots[sortedColumn];
+    }
+
+    /**
+     * Returns the position of a known column key in ascending key order.
+     */
+    private int indexOfColumn(Comparable key) {
+        List<Comparable> keys = getSortedColumnKeys();
+        int low = 0;
+        int high = keys.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = keys.get(mid).compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Makes a column index relative to maxColumns.
+     */
+    private int toSortedColumn(int column) {
+        return firstVisibleColumn() + column;
+    }
+
+    private int firstVisibleColumn() {
+        return Math.max(0, columnKeys.size() - maxColumns);
     }
 }
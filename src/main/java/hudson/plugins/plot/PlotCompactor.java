@@ -0,0 +1,192 @@
+package hudson.plugins.plot;
+
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+/**
+ * Drops the records of deleted builds from the plot data in the background.
+ * <p>
+ * When a build is deleted, whether by hand or by the build discarder, its
+ * number is recorded as a tombstone for the job and a compaction is scheduled
+ * after a short delay, so that the deletions of a log rotation are handled in
+ * a single pass over each plot of the job. Until then, readers skip the
+ * builds that have a tombstone. Plots are also compacted once after their
+ * data is first loaded, which drops the records of builds deleted while the
+ * plugin wasn't tracking deletions.
+ */
+public final class PlotCompactor {
+    private static final Logger LOGGER = Logger.getLogger(PlotCompactor.class.getName());
+
+    /**
+     * How long deletions are collected before compacting, in seconds.
+     */
+    static final int DELAY = SystemProperties.getInteger(
+            PlotCompactor.class.getName() + ".delay", 10);
+
+    /**
+     * The deleted builds not compacted yet, by job full name.
+     */
+    private static final Map<String, Tombstones> TOMBSTONES = new HashMap<>();
+
+    /**
+     * The plots to compact regardless of deletions.
+     */
+    private static final Set<Plot> PENDING_PLOTS =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private static boolean scheduled;
+
+    private PlotCompactor() {
+    }
+
+    /**
+     * Returns the deleted builds of the given job that are not compacted yet.
+     */
+    static BitSet getPendingDeletions(Job<?, ?> job) {
+        synchronized (TOMBSTONES) {
+            Tombstones tombstones = TOMBSTONES.get(job.getFullName());
+            return tombstones != null ? (BitSet) tombstones.builds.clone() : new BitSet();
+        }
+    }
+
+    /**
+     * Schedules a compaction of the given plot.
+     */
+    static void schedule(Plot plot) {
+        synchronized (TOMBSTONES) {
+            PENDING_PLOTS.add(plot);
+            scheduleCompaction();
+        }
+    }
+
+    /**
+     * Returns true if a compaction of the given plot is scheduled.
+     */
+    /* package */ static boolean isScheduled(Plot plot) {
+        synchronized (TOMBSTONES) {
+            return PENDING_PLOTS.contains(plot);
+        }
+    }
+
+    private static void deleted(Run<?, ?> run) {
+        if (run.getNumber() < 0) {
+            return;
+        }
+        synchronized (TOMBSTONES) {
+            TOMBSTONES.computeIfAbsent(run.getParent().getFullName(),
+                    name -> new Tombstones(run.getParent())).builds.set(run.getNumber());
+            scheduleCompaction();
+        }
+    }
+
+    private static void scheduleCompaction() {
+        if (!scheduled) {
+            scheduled = true;
+            Timer.get().schedule(PlotCompactor::compact, DELAY, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Compacts the plots of the jobs with deleted builds and the plots
+     * scheduled for compaction, then forgets the tombstones that were
+     * handled.
+     */
+    static void compact() {
+        Map<String, Tombstones> batch = new LinkedHashMap<>();
+        List<Plot> plots;
+        synchronized (TOMBSTONES) {
+            scheduled = false;
+            for (Map.Entry<String, Tombstones> entry : TOMBSTONES.entrySet()) {
+                Tombstones tombstones = entry.getValue();
+                batch.put(entry.getKey(),
+                        new Tombstones(tombstones.job, (BitSet) tombstones.builds.clone()));
+            }
+            plots = new ArrayList<>(PENDING_PLOTS);
+            PENDING_PLOTS.clear();
+        }
+        for (Tombstones tombstones : batch.values()) {
+            plots.addAll(getPlots(tombstones.job));
+        }
+        Set<Plot> compacted = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Plot plot : plots) {
+            if (compacted.add(plot)) {
+                try {
+                    plot.compactPlotData();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to compact plot " + plot.getTitle(), e);
+                }
+            }
+        }
+        synchronized (TOMBSTONES) {
+            for (Map.Entry<String, Tombstones> entry : batch.entrySet()) {
+                Tombstones tombstones = TOMBSTONES.get(entry.getKey());
+                if (tombstones != null) {
+                    tombstones.builds.andNot(entry.getValue().builds);
+                    if (tombstones.builds.isEmpty()) {
+                        TOMBSTONES.remove(entry.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the plots of the given job.
+     */
+    static List<Plot> getPlots(Job<?, ?> job) {
+        List<Plot> plots = new ArrayList<>();
+        for (PlotAction action : job.getActions(PlotAction.class)) {
+            plots.addAll(action.getPlots());
+        }
+        for (MatrixPlotAction action : job.getActions(MatrixPlotAction.class)) {
+            plots.addAll(action.getPlots());
+        }
+        for (Plot plot : plots) {
+            if (plot.getJob() == null) {
+                plot.setJob(job);
+            }
+        }
+        return plots;
+    }
+
+    /**
+     * The deleted builds of a job.
+     */
+    private static final class Tombstones {
+        private final Job<?, ?> job;
+        private final BitSet builds;
+
+        Tombstones(Job<?, ?> job) {
+            this(job, new BitSet());
+        }
+
+        Tombstones(Job<?, ?> job, BitSet builds) {
+            this.job = job;
+            this.builds = builds;
+        }
+    }
+
+    @Extension
+    public static final class RunListenerImpl extends RunListener<Run<?, ?>> {
+        @Override
+        public void onDeleted(Run<?, ?> run) {
+            deleted(run);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package hudson.plugins.plot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The recorded data of a {@link Plot}, kept in primitive columns.
+ * <p>
+ * Each record is one data point of one series for one build. Build numbers,
+ * timestamps and values are stored in primitive arrays; series labels and
+ * URLs are interned into a dictionary shared by all records, so each record
+ * only costs a few dozen bytes no matter how long its label and URL are.
+ * Values that are not numbers are stored as {@link Double#NaN} and their
+ * original text is kept on the side, as is the text of numbers written in
+ * another notation than the one {@link #getValueString} would give them.
+ */
+public final class PlotData {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final int NO_ENTRY = -1;
+
+    private int size;
+    private int[] buildNumbers;
+    private long[] timestamps;
+    private double[] values;
+    private int[] labelIds;
+    private int[] urlIds;
+
+    /**
+     * Labels and URLs, indexed by id.
+     */
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryIds = new HashMap<>();
+
+    /**
+     * The original text of the values that can't be given back from their
+     * number, indexed by record.
+     */
+    private final Map<Integer, String> textValues = new HashMap<>();
+
+    public PlotData() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public PlotData(int capacity) {
+        int initialCapacity = Math.max(capacity, 1);
+        buildNumbers = new int[initialCapacity];
+        timestamps = new long[initialCapacity];
+        values = new double[initialCapacity];
+        labelIds = new int[initialCapacity];
+        urlIds = new int[initialCapacity];
+    }
+
+    /**
+     * Returns the number of records.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds a record.
+     *
+     * @param value       the y-value of the data point
+     * @param label       the series label
+     * @param buildNumber the build number
+     * @param timestamp   the build date in milliseconds
+     * @param url         the optional URL of the data point
+     */
+    public void add(double value, String label, int buildNumber, long timestamp, String url) {
+        ensureCapacity(size + 1);
+        buildNumbers[size] = buildNumber;
+        timestamps[size] = timestamp;
+        values[size] = value;
+        labelIds[size] = intern(label);
+        urlIds[size] = intern(url);
+        size++;
+    }
+
+    /**
+     * Adds a record whose y-value is given as text, as read from a series file
+     * or a CSV plot file.
+     */
+    public void add(String value, String label, int buildNumber, long timestamp, String url) {
+        double number = parseValue(value);
+        if (value != null && !value.equals(valueToString(number))) {
+            textValues.put(size, value);
+        }
+        add(number, label, buildNumber, timestamp, url);
+    }
+
+    /**
+     * Adds the record at the given index of another instance.
+     */
+    public void add(PlotData other, int index) {
+        String text = other.textValues.get(index);
+        if (text != null) {
+            textValues.put(size, text);
+        }
+        add(other.values[index], other.getLabel(index), other.buildNumbers[index],
+                other.timestamps[index], other.getUrl(index));
+    }
+
+    /**
+     * Adds all records of another instance.
+     */
+    public void addAll(PlotData other) {
+        ensureCapacity(size + other.size);
+        for (int i = 0; i < other.size; i++) {
+            add(other, i);
+        }
+    }
+
+    /**
+     * Returns the records of the builds between the given build numbers, both
+     * inclusive, that belong to one of the given series.
+     *
+     * @param series the labels of the series to return, or null for all series
+     */
+    public PlotData select(int fromBuild, int toBuild, Set<String> series) {
+        PlotData selection = new PlotData(size);
+        for (int i = 0; i < size; i++) {
+            if (buildNumbers[i] >= fromBuild && buildNumbers[i] <= toBuild
+                    && (series == null || series.contains(getLabel(i)))) {
+                selection.add(this, i);
+            }
+        }
+        return selection;
+    }
+
+    public int getBuildNumber(int index) {
+        return buildNumbers[index];
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    public String getLabel(int index) {
+        return lookup(labelIds[index]);
+    }
+
+    public String getUrl(int index) {
+        return lookup(urlIds[index]);
+    }
+
+    /**
+     * Returns the y-value of a record as text.
+     */
+    public String getValueString(int index) {
+        String text = textValues.get(index);
+        return text != null ? text : valueToString(values[index]);
+    }
+
+    /**
+     * Returns the original text of the y-value of a record, or null if the
+     * text is the one its number formats to.
+     */
+    String getText(int index) {
+        return textValues.get(index);
+    }
+
+    /**
+     * Returns a record in the layout of the CSV plot file: series y-value,
+     * series label, build number, build date, url.
+     */
+    public String[] toRecord(int index) {
+        return new String[]{
+                getValueString(index),
+                getLabel(index),
+                Integer.toString(buildNumbers[index]),
+                Long.toString(timestamps[index]),
+                getUrl(index)
+        };
+    }
+
+    /**
+     * Parses a y-value, returning {@link Double#NaN} for anything that is not
+     * a number.
+     */
+    static double parseValue(String value) {
+        if (value == null) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException nfe) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Formats a value so that integral values keep their integer notation.
+     */
+    static String valueToString(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private int intern(String entry) {
+        if (entry == null) {
+            return NO_ENTRY;
+        }
+        Integer id = dictionaryIds.get(entry);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.add(entry);
+            dictionaryIds.put(entry, id);
+        }
+        return id;
+    }
+
+    private String lookup(int id) {
+        return id == NO_ENTRY ? null : dictionary.get(id);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= buildNumbers.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, buildNumbers.length + (buildNumbers.length >> 1));
+        buildNumbers = Arrays.copyOf(buildNumbers, newCapacity);
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+        labelIds = Arrays.copyOf(labelIds, newCapacity);
+        urlIds = Arrays.copyOf(urlIds, newCapacity);
+    }
+}
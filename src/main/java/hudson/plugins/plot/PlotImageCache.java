@@ -0,0 +1,190 @@
+package hudson.plugins.plot;
+
+import hudson.Util;
+import hudson.model.Job;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.http.HttpServletResponse;
+import jenkins.util.SystemProperties;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Bounded cache of rendered plots, so that pages that refresh periodically
+ * don't re-render plots whose data hasn't changed.
+ * <p>
+ * Entries are keyed by everything that goes into a rendered plot: the plot,
+ * the version of its data and the request parameters. The cache holds at most
+ * <code>hudson.plugins.plot.PlotImageCache.maxSize</code> bytes and evicts the
+ * least recently used entries first. Every entry carries a strong ETag so that
+ * browsers can revalidate their copy with <code>If-None-Match</code>.
+ * <p>
+ * Build descriptions and the set of builds shown on a plot change without the
+ * plot data changing, so each job also has a generation number that changes
+ * whenever one of its builds completes, is deleted or gets a new description,
+ * and whenever the job itself is saved; see {@link PlotBuildCache}.
+ * Generation numbers are drawn from a single counter, so a job that is
+ * forgotten and created again never gets back a number it had before.
+ */
+public final class PlotImageCache {
+    /**
+     * The maximum number of bytes held by the cache.
+     */
+    static final int MAX_SIZE = SystemProperties.getInteger(
+            PlotImageCache.class.getName() + ".maxSize", 32 * 1024 * 1024);
+
+    private static final PlotImageCache INSTANCE = new PlotImageCache(MAX_SIZE);
+
+    /**
+     * The generation number of each job, by full name.
+     */
+    private static final Map<String, Long> GENERATIONS = new ConcurrentHashMap<>();
+
+    /**
+     * The last generation number handed out to any job.
+     */
+    private static final AtomicLong LAST_GENERATION = new AtomicLong();
+
+    private final long maxSize;
+
+    private long size;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    PlotImageCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    static PlotImageCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cached entry with the given key, or null.
+     */
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Caches the given content, evicting the least recently used entries to
+     * stay within the size limit. Content larger than the limit is not cached.
+     *
+     * @return the new entry
+     */
+    synchronized Entry put(String key, byte[] content, String contentType) {
+        Entry entry = new Entry(content, contentType);
+        if (content.length > maxSize) {
+            return entry;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            size -= previous.content.length;
+        }
+        size += content.length;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (size > maxSize && eldest.hasNext()) {
+            size -= eldest.next().content.length;
+            eldest.remove();
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the number of bytes currently held by the cache.
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Returns the current generation number of the given job.
+     */
+    static long getGeneration(Job<?, ?> job) {
+        return GENERATIONS.computeIfAbsent(job.getFullName(),
+                name -> LAST_GENERATION.incrementAndGet());
+    }
+
+    /**
+     * Makes the cached plots of the given job stale.
+     */
+    static void invalidate(Job<?, ?> job) {
+        GENERATIONS.put(job.getFullName(), LAST_GENERATION.incrementAndGet());
+    }
+
+    /**
+     * Drops the generation numbers of the item with the given full name and
+     * of the jobs it contains.
+     */
+    static void forget(String fullName) {
+        GENERATIONS.keySet().removeIf(name -> PlotBuildCache.isWithin(name, fullName));
+    }
+
+    /**
+     * Checks an <code>If-None-Match</code> header against an ETag.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || etag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A rendered plot or image map.
+     */
+    static final class Entry {
+        private final byte[] content;
+        private final String contentType;
+        private final String etag;
+
+        Entry(byte[] content, String contentType) {
+            this.content = content;
+            this.contentType = contentType;
+            this.etag = '"' + digest(content) + '"';
+        }
+
+        String getEtag() {
+            return etag;
+        }
+
+        /**
+         * Writes the content to the response, or a 304 if the client already
+         * has it.
+         */
+        void serve(StaplerRequest req, StaplerResponse rsp) throws IOException {
+            rsp.setHeader("ETag", etag);
+            rsp.setHeader("Cache-Control", "no-cache");
+            if (matches(req.getHeader("If-None-Match"), etag)) {
+                rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            rsp.setContentType(contentType);
+            rsp.setContentLength(content.length);
+            rsp.getOutputStream().write(content);
+        }
+
+        private static String digest(byte[] content) {
+            try {
+                return Util.toHexString(MessageDigest.getInstance("SHA-256").digest(content));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
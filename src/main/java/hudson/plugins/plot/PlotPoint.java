@@ -5,7 +5,11 @@
  */
 package hudson.plugins.plot;
 
-public class PlotPoint {
+import java.io.Serializable;
+
+public class PlotPoint implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     /**
      * YValue for a plot point
      */
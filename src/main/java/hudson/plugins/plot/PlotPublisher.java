@@ -147,9 +147,8 @@ public class PlotPublisher extends AbstractPlotPublisher {
     private void recordPlotData(Run<?, ?> build, TaskListener listener) {
         listener.getLogger().println("Recording plot data");
         // add the build to each plot
-        for (Plot plot : getPlots()) {
-            plot.addBuild((AbstractBuild<?, ?>) build, listener.getLogger());
-        }
+        Plot.addBuild(getPlots(), build, listener.getLogger(),
+                ((AbstractBuild<?, ?>) build).getWorkspace());
     }
 
     @Override
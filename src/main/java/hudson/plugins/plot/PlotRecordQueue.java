@@ -0,0 +1,355 @@
+package hudson.plugins.plot;
+
+import com.opencsv.CSVWriter;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Job;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+/**
+ * Records plot data in the background, when
+ * <code>hudson.plugins.plot.PlotRecordQueue.enabled</code> is set.
+ * <p>
+ * Builds still parse their series files, as the workspace may be gone later,
+ * but instead of writing to the {@link PlotStore} they save the points to a
+ * file of the <code>plot-queue</code> directory of JENKINS_HOME and return.
+ * A background thread applies the files in the order they were queued,
+ * merging the files of each plot into a single write, then deletes them.
+ * <p>
+ * Files left over by a restart are applied once the jobs are loaded, even
+ * if the queue has been disabled since. As such a file may have been written
+ * to the store before the restart, its build is skipped if the plot already
+ * has records for it. Files whose records were written but that couldn't be
+ * deleted are never written again.
+ */
+public final class PlotRecordQueue {
+    private static final Logger LOGGER = Logger.getLogger(PlotRecordQueue.class.getName());
+
+    /**
+     * Whether builds queue their plot data rather than record it.
+     */
+    static final boolean ENABLED = SystemProperties.getBoolean(
+            PlotRecordQueue.class.getName() + ".enabled");
+
+    /**
+     * How long to wait before applying files again after a failure, in
+     * seconds.
+     */
+    static final int RETRY_DELAY = SystemProperties.getInteger(
+            PlotRecordQueue.class.getName() + ".retryDelay", 60);
+
+    private static final String DIRECTORY = "plot-queue";
+
+    private static final String SUFFIX = ".csv";
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "PlotRecordQueue"));
+
+    private static final AtomicBoolean SCHEDULED = new AtomicBoolean();
+
+    /**
+     * The names of the files queued before the last start.
+     */
+    private static final Set<String> RECOVERED = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The names of the files written to the store but not deleted yet.
+     */
+    private static final Set<String> APPLIED = ConcurrentHashMap.newKeySet();
+
+    private static long sequence = -1;
+
+    private PlotRecordQueue() {
+    }
+
+    /**
+     * Saves the records of a build for the given plot, to be written to the
+     * store in the background.
+     */
+    static void enqueue(Plot plot, int buildNumber, PlotData records) throws IOException {
+        File directory = getDirectory();
+        Files.createDirectories(directory.toPath());
+        // files of a plot become visible in the order of their names
+        Lock lock = PlotStore.getLock(plot);
+        lock.lock();
+        try {
+            String name = String.format("%019d", nextSequence(directory)) + SUFFIX;
+            File tmpFile = new File(directory, name + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmpFile);
+                 CSVWriter writer = new CSVWriter(new OutputStreamWriter(out,
+                         StandardCharsets.UTF_8))) {
+                writer.writeNext(new String[]{
+                        plot.getJob().getFullName(), plot.getCsvFileName(), plot.getTitle(),
+                        plot.getNumBuilds(), Boolean.toString(plot.getKeepRecords()),
+                        Integer.toString(buildNumber)
+                });
+                for (int i = 0; i < records.size(); i++) {
+                    writer.writeNext(records.toRecord(i));
+                }
+                writer.flush();
+                out.getFD().sync();
+            }
+            Files.move(tmpFile.toPath(), new File(directory, name).toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.unlock();
+        }
+        schedule();
+    }
+
+    /**
+     * Applies the files left over by the previous run of Jenkins.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void recover() {
+        File[] files = listFiles();
+        for (File file : files) {
+            RECOVERED.add(file.getName());
+        }
+        if (files.length > 0) {
+            LOGGER.log(Level.INFO, "Applying " + files.length + " queued plot data files");
+            schedule();
+        }
+    }
+
+    /* package */ static void schedule() {
+        if (SCHEDULED.compareAndSet(false, true)) {
+            EXECUTOR.execute(PlotRecordQueue::apply);
+        }
+    }
+
+    /**
+     * Waits until the files scheduled so far have been applied.
+     */
+    /* package */ static void flush() throws InterruptedException, ExecutionException {
+        EXECUTOR.submit(() -> { }).get();
+    }
+
+    private static synchronized long nextSequence(File directory) {
+        if (sequence < 0) {
+            sequence = 0;
+            for (File file : listFiles()) {
+                String name = file.getName();
+                try {
+                    sequence = Math.max(sequence, Long.parseLong(
+                            name.substring(0, name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    LOGGER.log(Level.WARNING, "Unexpected file " + file + " in " + directory);
+                }
+            }
+        }
+        return ++sequence;
+    }
+
+    private static File getDirectory() {
+        return new File(Jenkins.get().getRootDir(), DIRECTORY);
+    }
+
+    /**
+     * Returns the queued files, in the order they were queued.
+     */
+    private static File[] listFiles() {
+        File[] files = getDirectory().listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Applies the queued files, plot by plot.
+     */
+    static void apply() {
+        SCHEDULED.set(false);
+        Map<String, List<Entry>> plots = new LinkedHashMap<>();
+        for (File file : listFiles()) {
+            try {
+                Entry entry = Entry.read(file);
+                plots.computeIfAbsent(entry.jobName + '/' + entry.csvFileName,
+                        key -> new ArrayList<>()).add(entry);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Dropping unreadable plot data file " + file, e);
+                delete(file);
+            }
+        }
+        boolean failed = false;
+        for (List<Entry> entries : plots.values()) {
+            failed |= !apply(entries);
+        }
+        if (failed) {
+            Timer.get().schedule(PlotRecordQueue::schedule, RETRY_DELAY, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Writes the records of the given files of a plot at once.
+     *
+     * @return false if they couldn't be written and should be tried again
+     */
+    private static boolean apply(List<Entry> entries) {
+        Entry first = entries.get(0);
+        Job<?, ?> job = Jenkins.get().getItemByFullName(first.jobName, Job.class);
+        if (job == null) {
+            LOGGER.log(Level.WARNING, "Dropping queued plot data of missing job "
+                    + first.jobName);
+            entries.forEach(PlotRecordQueue::delete);
+            return true;
+        }
+        Plot plot = new Plot(first.title, null, null, first.numBuilds, first.csvFileName,
+                null, false, first.keepRecords, false, false, null, null, null);
+        plot.setJob(job);
+        List<Integer> builds = new ArrayList<>();
+        try {
+            Set<Integer> written = getWrittenBuilds(plot, entries);
+            PlotData records = new PlotData();
+            for (Entry entry : entries) {
+                if (APPLIED.contains(entry.file.getName())
+                        || written.contains(entry.buildNumber)) {
+                    continue;
+                }
+                records.addAll(entry.records);
+                builds.add(entry.buildNumber);
+            }
+            PlotAppendQueue.append(plot, records);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Failed to apply queued plot data of " + first.jobName
+                    + ", retrying in " + RETRY_DELAY + " seconds", e);
+            return false;
+        }
+        // from now on the files must not be written again, whatever happens
+        for (Entry entry : entries) {
+            APPLIED.add(entry.file.getName());
+        }
+        try {
+            for (int build : builds) {
+                if (plot.needsCompaction(build)) {
+                    plot.compactPlotData();
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to compact plot data of " + first.jobName, e);
+        }
+        entries.forEach(PlotRecordQueue::delete);
+        return true;
+    }
+
+    /**
+     * Returns the builds of the files queued before the last start that
+     * already have records in the store, reading the store once.
+     */
+    private static Set<Integer> getWrittenBuilds(Plot plot, List<Entry> entries)
+            throws IOException {
+        int fromBuild = Integer.MAX_VALUE;
+        int toBuild = Integer.MIN_VALUE;
+        for (Entry entry : entries) {
+            if (RECOVERED.contains(entry.file.getName())) {
+                fromBuild = Math.min(fromBuild, entry.buildNumber);
+                toBuild = Math.max(toBuild, entry.buildNumber);
+            }
+        }
+        Set<Integer> builds = new HashSet<>();
+        if (fromBuild <= toBuild) {
+            PlotData records = PlotStore.get().read(plot, fromBuild, toBuild, null);
+            for (int i = 0; i < records.size(); i++) {
+                builds.add(records.getBuildNumber(i));
+            }
+        }
+        return builds;
+    }
+
+    private static void delete(Entry entry) {
+        if (delete(entry.file)) {
+            APPLIED.remove(entry.file.getName());
+            RECOVERED.remove(entry.file.getName());
+        }
+    }
+
+    private static boolean delete(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to delete " + file, e);
+            return false;
+        }
+    }
+
+    /**
+     * The records of a build for a plot, read from a queued file.
+     */
+    private static final class Entry {
+        private final File file;
+        private final String jobName;
+        private final String csvFileName;
+        private final String title;
+        private final String numBuilds;
+        private final boolean keepRecords;
+        private final int buildNumber;
+        private final PlotData records = new PlotData();
+
+        private Entry(File file, CSVTokenizer tokenizer) {
+            this.file = file;
+            this.jobName = tokenizer.get(0);
+            this.csvFileName = tokenizer.get(1);
+            this.title = tokenizer.get(2);
+            this.numBuilds = tokenizer.get(3);
+            this.keepRecords = Boolean.parseBoolean(tokenizer.get(4));
+            this.buildNumber = tokenizer.getInt(5);
+        }
+
+        static Entry read(File file) throws IOException {
+            try (CSVTokenizer tokenizer = new CSVTokenizer(new InputStreamReader(
+                    new FileInputStream(file), StandardCharsets.UTF_8))) {
+                if (!tokenizer.next()) {
+                    throw new IOException("Empty plot data file");
+                }
+                Entry entry = new Entry(file, tokenizer);
+                while (tokenizer.next()) {
+                    String label = tokenizer.get(1);
+                    int buildNumber = tokenizer.getInt(2);
+                    long timestamp = tokenizer.getLong(3);
+                    String url = tokenizer.get(4);
+                    try {
+                        entry.records.add(tokenizer.getDouble(0), label, buildNumber,
+                                timestamp, url);
+                    } catch (NumberFormatException e) {
+                        entry.records.add(tokenizer.get(0), label, buildNumber, timestamp,
+                                url);
+                    }
+                }
+                return entry;
+            }
+        }
+    }
+}
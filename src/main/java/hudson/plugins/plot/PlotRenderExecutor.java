@@ -0,0 +1,235 @@
+package hudson.plugins.plot;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletResponse;
+import jenkins.util.SystemProperties;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Renders plots on a dedicated, bounded thread pool instead of the request
+ * threads, so that a page with many plots opened by many users can't starve
+ * the rest of the UI.
+ * <p>
+ * Requests are handed over to the pool through servlet async processing when
+ * the container supports it, and the request thread waits for the render
+ * otherwise. When the queue of pending renders is full, or a request waits
+ * for its render longer than the timeout, a bodiless 503 with a
+ * <code>Retry-After</code> header is returned. Identical requests that arrive
+ * while a render is in flight wait for that render rather than starting their
+ * own.
+ */
+final class PlotRenderExecutor {
+    private static final Logger LOGGER = Logger.getLogger(PlotRenderExecutor.class.getName());
+
+    private static final String PREFIX = PlotRenderExecutor.class.getName();
+
+    /**
+     * The number of render threads.
+     */
+    static final int THREADS = SystemProperties.getInteger(PREFIX + ".threads",
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+
+    /**
+     * The number of renders that can wait for a thread.
+     */
+    static final int QUEUE_SIZE = SystemProperties.getInteger(PREFIX + ".queueSize", 100);
+
+    /**
+     * How long a request waits for its render, in milliseconds. This bounds
+     * the response time only: a render that takes longer is not cancelled, as
+     * other requests may wait for it and it fills the cache for the retry.
+     */
+    static final int TIMEOUT = SystemProperties.getInteger(PREFIX + ".timeout", 60000);
+
+    /**
+     * How long clients are asked to wait before retrying, in seconds.
+     */
+    static final int RETRY_AFTER = SystemProperties.getInteger(PREFIX + ".retryAfter", 5);
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    /**
+     * The renders in flight, by key.
+     */
+    private static final ConcurrentMap<String, CompletableFuture<PlotImageCache.Entry[]>>
+            IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private PlotRenderExecutor() {
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS,
+                60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(QUEUE_SIZE, 1)),
+                new NamingThreadFactory(new DaemonThreadFactory(), "PlotRenderExecutor"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Renders on the pool and writes the result to the response. Requests
+     * with the same key that arrive while a render is in flight share its
+     * result instead of rendering again.
+     *
+     * @param req    the incoming request
+     * @param rsp    the response stream
+     * @param key    identifies the rendered output
+     * @param render renders the entries
+     * @param select picks the entry to serve from the rendered entries
+     */
+    static void serve(StaplerRequest req, StaplerResponse rsp, String key,
+                      Callable<PlotImageCache.Entry[]> render,
+                      Function<PlotImageCache.Entry[], PlotImageCache.Entry> select)
+            throws IOException {
+        if (req.isAsyncSupported()) {
+            serveAsync(req, rsp, key, render, select);
+        } else {
+            serveSync(req, rsp, key, render, select);
+        }
+    }
+
+    /**
+     * Starts a render, or joins the one in flight with the same key.
+     *
+     * @throws RejectedExecutionException if the queue is full
+     */
+    static CompletableFuture<PlotImageCache.Entry[]> submit(
+            String key, Callable<PlotImageCache.Entry[]> render) {
+        CompletableFuture<PlotImageCache.Entry[]> created = new CompletableFuture<>();
+        CompletableFuture<PlotImageCache.Entry[]> inFlight = IN_FLIGHT.putIfAbsent(key, created);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        try {
+            EXECUTOR.execute(() -> {
+                PlotImageCache.Entry[] entries;
+                try {
+                    entries = render.call();
+                } catch (Throwable t) {
+                    IN_FLIGHT.remove(key, created);
+                    created.completeExceptionally(t);
+                    return;
+                }
+                // removed first, so that a request made once it completed renders again
+                IN_FLIGHT.remove(key, created);
+                created.complete(entries);
+            });
+        } catch (RejectedExecutionException e) {
+            IN_FLIGHT.remove(key, created);
+            throw e;
+        }
+        return created;
+    }
+
+    private static void serveAsync(StaplerRequest req, StaplerResponse rsp, String key,
+                                   Callable<PlotImageCache.Entry[]> render,
+                                   Function<PlotImageCache.Entry[], PlotImageCache.Entry> select)
+            throws IOException {
+        AsyncContext async = req.startAsync();
+        async.setTimeout(TIMEOUT);
+        // set by whichever of the render and the timeout writes the response
+        AtomicBoolean responded = new AtomicBoolean();
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                // the render goes on and fills the cache for the retry
+                if (responded.compareAndSet(false, true)) {
+                    unavailable(rsp);
+                    async.complete();
+                }
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                responded.set(true);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        CompletableFuture<PlotImageCache.Entry[]> future;
+        try {
+            future = submit(key, render);
+        } catch (RejectedExecutionException e) {
+            if (responded.compareAndSet(false, true)) {
+                unavailable(rsp);
+                async.complete();
+            }
+            return;
+        }
+        future.whenComplete((entries, error) -> {
+            if (!responded.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (error != null) {
+                    LOGGER.log(Level.SEVERE, "Exception plotting graph", error);
+                    rsp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                } else {
+                    select.apply(entries).serve(req, rsp);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to send plot", e);
+            } finally {
+                async.complete();
+            }
+        });
+    }
+
+    private static void serveSync(StaplerRequest req, StaplerResponse rsp, String key,
+                                  Callable<PlotImageCache.Entry[]> render,
+                                  Function<PlotImageCache.Entry[], PlotImageCache.Entry> select)
+            throws IOException {
+        CompletableFuture<PlotImageCache.Entry[]> future;
+        try {
+            future = submit(key, render);
+        } catch (RejectedExecutionException e) {
+            unavailable(rsp);
+            return;
+        }
+        PlotImageCache.Entry[] entries;
+        try {
+            entries = future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            unavailable(rsp);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unavailable(rsp);
+            return;
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        select.apply(entries).serve(req, rsp);
+    }
+
+    private static void unavailable(StaplerResponse rsp) {
+        rsp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        rsp.setHeader("Retry-After", Integer.toString(RETRY_AFTER));
+        rsp.setContentLength(0);
+    }
+}
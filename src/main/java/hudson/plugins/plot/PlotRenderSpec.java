@@ -0,0 +1,187 @@
+package hudson.plugins.plot;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.StaplerRequest;
+
+/**
+ * The parameters of a single request to render a {@link Plot}: the size of
+ * the image and the settings that the request URL overrides. Instances are
+ * immutable, so concurrent requests for the same plot never see each other's
+ * parameters.
+ */
+final class PlotRenderSpec {
+    private static final Logger LOGGER = Logger.getLogger(PlotRenderSpec.class.getName());
+
+    /**
+     * The default plot width.
+     */
+    private static final int DEFAULT_WIDTH = 750;
+
+    /**
+     * The default plot height.
+     */
+    private static final int DEFAULT_HEIGHT = 450;
+
+    private final int width;
+    private final int height;
+    private final String numBuilds;
+    private final int rightBuildNum;
+    private final boolean hasLegend;
+    private final String title;
+    private final String style;
+    private final boolean useDescr;
+
+    @SuppressWarnings("parameternumber")
+    PlotRenderSpec(int width, int height, String numBuilds, int rightBuildNum,
+                   boolean hasLegend, String title, String style, boolean useDescr) {
+        this.width = width;
+        this.height = height;
+        this.numBuilds = numBuilds;
+        this.rightBuildNum = rightBuildNum;
+        this.hasLegend = hasLegend;
+        this.title = title;
+        this.style = style;
+        this.useDescr = useDescr;
+    }
+
+    /**
+     * Reads the parameters of the given request, falling back to the
+     * configuration of the plot for the ones that are missing.
+     */
+    static PlotRenderSpec fromRequest(StaplerRequest req, Plot plot) {
+        String urlTitle = req.getParameter("title");
+        String urlStyle = req.getParameter("style");
+        String urlUseDescr = req.getParameter("usedescr");
+        String legend = req.getParameter("haslegend");
+        return new PlotRenderSpec(
+                parseSize(req.getParameter("width"), DEFAULT_WIDTH),
+                parseSize(req.getParameter("height"), DEFAULT_HEIGHT),
+                parseNumBuilds(req.getParameter("numbuilds"), plot.getNumBuilds()),
+                parseRightBuildNum(req.getParameter("rightbuildnum")),
+                legend == null || isTrue(legend),
+                urlTitle != null ? urlTitle : plot.getTitle(),
+                urlStyle != null ? urlStyle : (plot.style != null ? plot.style : ""),
+                urlUseDescr != null ? isTrue(urlUseDescr) : plot.useDescr);
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of builds back to show, or null or an empty string
+     * for all builds.
+     */
+    String getNumBuilds() {
+        return numBuilds;
+    }
+
+    /**
+     * Returns the right-most build number shown on the plot.
+     */
+    int getRightBuildNum() {
+        return rightBuildNum;
+    }
+
+    boolean hasLegend() {
+        return hasLegend;
+    }
+
+    String getTitle() {
+        return title;
+    }
+
+    String getStyle() {
+        return style;
+    }
+
+    boolean getUseDescr() {
+        return useDescr;
+    }
+
+    /**
+     * Returns a string that identifies the rendered output of this spec, for
+     * use in cache keys. Free text fields are prefixed with their length, so
+     * that separators within them can't make two specs share a key.
+     */
+    String getCacheKey() {
+        return width + "|" + height + '|' + keyField(numBuilds) + '|' + rightBuildNum
+                + '|' + keyField(style) + '|' + keyField(title) + '|' + useDescr
+                + '|' + hasLegend;
+    }
+
+    /**
+     * Returns the given text as a field of a cache key, prefixed with its
+     * length and telling null apart from "null".
+     */
+    static String keyField(String value) {
+        return value == null ? "-" : value.length() + ":" + value;
+    }
+
+    @Override
+    public String toString() {
+        return "WIDTH(" + width + "),HEIGHT(" + height + "),NUMBUILDS(" + numBuilds
+                + "),RIGHTBUILDNUM(" + rightBuildNum + "),HASLEGEND(" + hasLegend
+                + "),TITLE(" + title + "),STYLE(" + style + "),USEDESCR(" + useDescr + ")";
+    }
+
+    private static boolean isTrue(String value) {
+        return "on".equalsIgnoreCase(value) || "true".equalsIgnoreCase(value);
+    }
+
+    /**
+     * Parses the width or height parameter. If the parameter doesn't exist or
+     * isn't an integer then the default is used.
+     */
+    private static int parseSize(String size, int defaultSize) {
+        if (size == null) {
+            return defaultSize;
+        }
+        try {
+            return Integer.parseInt(size);
+        } catch (NumberFormatException nfe) {
+            LOGGER.log(Level.SEVERE, "Exception converting to integer", nfe);
+            return defaultSize;
+        }
+    }
+
+    /**
+     * Parses the "numbuilds" parameter. If the parameter doesn't exist or isn't
+     * an integer then the configured number of builds is used.
+     */
+    private static String parseNumBuilds(String urlNumBuilds, String numBuilds) {
+        if (urlNumBuilds == null) {
+            return numBuilds;
+        }
+        try {
+            // simply try and parse the string to see if it's a valid
+            // number, throw away the result.
+            Integer.parseInt(urlNumBuilds);
+            return urlNumBuilds;
+        } catch (NumberFormatException nfe) {
+            return numBuilds;
+        }
+    }
+
+    /**
+     * Parses the "rightbuildnum" parameter. If the parameter doesn't exist or
+     * isn't an integer then all builds are shown.
+     */
+    private static int parseRightBuildNum(String build) {
+        if (StringUtils.isBlank(build)) {
+            return Integer.MAX_VALUE;
+        }
+        try {
+            return Integer.parseInt(build);
+        } catch (NumberFormatException nfe) {
+            LOGGER.log(Level.SEVERE, "Exception converting to integer", nfe);
+            return Integer.MAX_VALUE;
+        }
+    }
+}
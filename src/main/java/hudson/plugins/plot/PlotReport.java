@@ -4,19 +4,14 @@
  */
 package hudson.plugins.plot;
 
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvValidationException;
 import hudson.model.AbstractProject;
 import hudson.model.Job;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.text.NumberFormat;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.IntPredicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.collections.CollectionUtils;
@@ -138,78 +133,60 @@ public class PlotReport {
 
         Plot plot = getPlot(i);
 
-        // load existing csv file
-        File plotFile = new File(project.getRootDir(), plot.getCsvFileName());
-        if (!plotFile.exists()) {
+        // load existing plot data
+        PlotData records = plot.readPlotData();
+        if (records.isEmpty()) {
             return tableData;
         }
-        CSVReader reader = null;
-        try {
-            reader = new CSVReader(new InputStreamReader(new FileInputStream(plotFile),
-                    Charset.defaultCharset().name()));
-            // throw away 2 header lines
-            reader.readNext();
-            reader.readNext();
-            // array containing header titles
-            List<String> header = new ArrayList<>();
-            header.add(Messages.Plot_Build() + " #");
-            tableData.add(header);
-            String[] nextLine;
-            while ((nextLine = reader.readNext()) != null) {
-                String buildNumber = nextLine[2];
-                if (!plot.reportBuild(Integer.parseInt(buildNumber))) {
-                    continue;
-                }
-                String seriesLabel = nextLine[1];
-                // index of the column where the value should be located
-                int index = header.lastIndexOf(seriesLabel);
-                if (index <= 0) {
-                    // add header label
-                    index = header.size();
-                    header.add(seriesLabel);
-                }
-                List<String> tableRow = null;
-                for (int j = 1; j < tableData.size(); j++) {
-                    List<String> r = tableData.get(j);
-                    if (StringUtils.equals(r.get(0), buildNumber)) {
-                        // found table row corresponding to the build number
-                        tableRow = r;
-                        break;
-                    }
-                }
-                // table row corresponding to the build number not found
-                if (tableRow == null) {
-                    // create table row with build number at first column
-                    tableRow = new ArrayList<>();
-                    tableRow.add(buildNumber);
-                    tableData.add(tableRow);
-                }
-                // set value at index column
-                String value = nextLine[0];
-                if (index < tableRow.size()) {
-                    tableRow.set(index, value);
-                } else {
-                    for (int j = tableRow.size(); j < index; j++) {
-                        tableRow.add(StringUtils.EMPTY);
-                    }
-                    tableRow.add(value);
+        // array containing header titles
+        List<String> header = new ArrayList<>();
+        header.add(Messages.Plot_Build() + " #");
+        tableData.add(header);
+        IntPredicate reportedBuilds = plot.reportedBuilds();
+        for (int record = 0; record < records.size(); record++) {
+            if (!reportedBuilds.test(records.getBuildNumber(record))) {
+                continue;
+            }
+            String buildNumber = Integer.toString(records.getBuildNumber(record));
+            String seriesLabel = records.getLabel(record);
+            // index of the column where the value should be located
+            int index = header.lastIndexOf(seriesLabel);
+            if (index <= 0) {
+                // add header label
+                index = header.size();
+                header.add(seriesLabel);
+            }
+            List<String> tableRow = null;
+            for (int j = 1; j < tableData.size(); j++) {
+                List<String> r = tableData.get(j);
+                if (StringUtils.equals(r.get(0), buildNumber)) {
+                    // found table row corresponding to the build number
+                    tableRow = r;
+                    break;
                 }
             }
-            int lastColumn = tableData.get(0).size();
-            for (List<String> tableRow : tableData) {
-                for (int j = tableRow.size(); j < lastColumn; j++) {
+            // table row corresponding to the build number not found
+            if (tableRow == null) {
+                // create table row with build number at first column
+                tableRow = new ArrayList<>();
+                tableRow.add(buildNumber);
+                tableData.add(tableRow);
+            }
+            // set value at index column
+            String value = records.getValueString(record);
+            if (index < tableRow.size()) {
+                tableRow.set(index, value);
+            } else {
+                for (int j = tableRow.size(); j < index; j++) {
                     tableRow.add(StringUtils.EMPTY);
                 }
+                tableRow.add(value);
             }
-        } catch (CsvValidationException | IOException ioe) {
-            LOGGER.log(Level.SEVERE, "Exception reading csv file", ioe);
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    LOGGER.log(Level.INFO, "Failed to close CSV reader", e);
-                }
+        }
+        int lastColumn = tableData.get(0).size();
+        for (List<String> tableRow : tableData) {
+            for (int j = tableRow.size(); j < lastColumn; j++) {
+                tableRow.add(StringUtils.EMPTY);
             }
         }
         return tableData;
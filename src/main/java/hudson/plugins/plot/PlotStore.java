@@ -0,0 +1,163 @@
+package hudson.plugins.plot;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+/**
+ * Persists the recorded data of a {@link Plot}.
+ * <p>
+ * Each record is one data point of one series for one build, see
+ * {@link PlotData}. The store in
+ * use is selected with the <code>hudson.plugins.plot.PlotStore</code> system
+ * property, which holds the {@link #getId() id} of the store; the CSV store
+ * is used by default.
+ */
+public abstract class PlotStore implements ExtensionPoint {
+    private static final Logger LOGGER = Logger.getLogger(PlotStore.class.getName());
+
+    /**
+     * The id of the store selected for this Jenkins instance.
+     */
+    private static final String SELECTED_ID =
+            SystemProperties.getString(PlotStore.class.getName(), CSVPlotStore.ID);
+
+    /**
+     * Locks that serialize the changes to plot data, striped by plot.
+     */
+    private static final Lock[] LOCKS = new Lock[64];
+
+    static {
+        for (int i = 0; i < LOCKS.length; i++) {
+            LOCKS[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Counts the changes made to plot data through the stores, striped as the
+     * locks.
+     */
+    private static final AtomicLongArray CHANGES = new AtomicLongArray(LOCKS.length);
+
+    /**
+     * Returns the short name used to select this store.
+     */
+    public abstract String getId();
+
+    /**
+     * Appends the records of a build to the plot data.
+     *
+     * @param plot    the plot the records belong to
+     * @param records the records to append
+     */
+    public abstract void append(Plot plot, PlotData records) throws IOException;
+
+    /**
+     * Reads the records of the builds between the given build numbers, both
+     * inclusive, in the order they were appended.
+     *
+     * @param plot      the plot to read
+     * @param fromBuild the lowest build number to return
+     * @param toBuild   the highest build number to return
+     * @param series    the labels of the series to return, or null for all series
+     * @return the matching records, never null
+     */
+    public abstract PlotData read(Plot plot, int fromBuild, int toBuild,
+                                  Set<String> series) throws IOException;
+
+    /**
+     * Returns the build number of the oldest record of the plot data, or -1
+     * if there is no record.
+     */
+    public abstract int getOldestBuild(Plot plot) throws IOException;
+
+    /**
+     * Drops the records of all builds that are not accepted by the given
+     * filter.
+     *
+     * @param plot   the plot to compact
+     * @param builds accepts the build numbers to keep
+     */
+    public abstract void retain(Plot plot, IntPredicate builds) throws IOException;
+
+    /**
+     * Returns a stamp that changes whenever the plot data changes, as a
+     * version for cached data.
+     */
+    public abstract long getVersion(Plot plot);
+
+    /**
+     * Returns the version of the plot data held in the given file. Several
+     * changes may fall within one tick of the modification time of the file,
+     * so the changes made through the stores are counted too; the time and
+     * the size of the file pick up changes made by other means.
+     */
+    protected static long getFileVersion(Plot plot, File file) {
+        return (file.lastModified() * 31 + file.length()) * 31 + CHANGES.get(getStripe(plot));
+    }
+
+    /**
+     * Records that the data of the given plot changed. Called once the change
+     * is written, so that a reader never pairs the new version with old data.
+     */
+    protected static void changed(Plot plot) {
+        CHANGES.incrementAndGet(getStripe(plot));
+    }
+
+    /**
+     * Returns the file in the job's root directory holding the plot data with
+     * the given extension in place of the CSV one.
+     */
+    protected File getDataFile(Plot plot, String extension) {
+        String name = plot.getCsvFileName();
+        if (name.endsWith(".csv")) {
+            name = name.substring(0, name.length() - ".csv".length());
+        }
+        return new File(plot.getJob().getRootDir(), name + extension);
+    }
+
+    /**
+     * Returns the lock that guards the changes to the data of the given plot,
+     * so that appends and compactions of the same plot don't interleave.
+     */
+    static Lock getLock(Plot plot) {
+        return LOCKS[getStripe(plot)];
+    }
+
+    private static int getStripe(Plot plot) {
+        return Math.floorMod(getKey(plot).hashCode(), LOCKS.length);
+    }
+
+    /**
+     * Returns the key that tells apart the data of the plots of all jobs.
+     */
+    static String getKey(Plot plot) {
+        return plot.getJob().getFullName() + '/' + plot.getCsvFileName();
+    }
+
+    /**
+     * Returns the store selected for this Jenkins instance.
+     */
+    public static PlotStore get() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins != null) {
+            for (PlotStore store : ExtensionList.lookup(PlotStore.class)) {
+                if (store.getId().equals(SELECTED_ID)) {
+                    return store;
+                }
+            }
+            LOGGER.log(Level.WARNING, "Unknown plot store " + SELECTED_ID + ", using CSV");
+        }
+        return new CSVPlotStore();
+    }
+}
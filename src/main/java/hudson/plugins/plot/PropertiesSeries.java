@@ -27,6 +27,7 @@ import org.kohsuke.stapler.StaplerRequest;
  * @author Allen Reese
  */
 public class PropertiesSeries extends Series {
+    private static final long serialVersionUID = 1L;
     private static final transient Logger LOGGER =
             Logger.getLogger(PropertiesSeries.class.getName());
 
@@ -36,30 +37,37 @@ public class PropertiesSeries extends Series {
     }
 
     /**
-     * Load the series from a properties file.
+     * Load the series from every properties file matching the file pattern.
+     * When several files match, the points of all but the first file by path
+     * are labelled with their file.
      */
     @Override
-    public List<PlotPoint> loadSeries(FilePath workspaceRootDir, int buildNumber,
-                                      PrintStream logger) {
-        InputStream in = null;
-        FilePath[] seriesFiles;
-
-        try {
-            seriesFiles = workspaceRootDir.list(getFile());
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE,
-                    "Exception trying to retrieve series files", e);
+    protected List<PlotPoint> parseSeries(FilePath workspaceRootDir, FilePath[] seriesFiles,
+                                          SeriesFileCache cache, int buildNumber,
+                                          PrintStream logger) {
+        if (ArrayUtils.isEmpty(seriesFiles)) {
+            logger.println("No plot data file found: " + getFile());
             return null;
         }
 
-        if (ArrayUtils.isEmpty(seriesFiles)) {
-            logger.println("No plot data file found: " + getFile());
+        try {
+            return SeriesFiles.merge(workspaceRootDir, seriesFiles, SeriesFiles.parseAll(
+                    seriesFiles, f -> loadSeriesFile(f, logger)), true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return null;
         }
+    }
+
+    /**
+     * Load the series from one properties file.
+     */
+    private List<PlotPoint> loadSeriesFile(FilePath seriesFile, PrintStream logger) {
+        InputStream in = null;
 
         try {
-            in = seriesFiles[0].read();
-            logger.println("Saving plot series data from: " + seriesFiles[0]);
+            in = seriesFile.read();
+            logger.println("Saving plot series data from: " + seriesFile);
             Properties properties = new Properties();
             properties.load(in);
             String yvalue = properties.getProperty("YVALUE");
@@ -74,7 +82,7 @@ public class PropertiesSeries extends Series {
             return series;
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Exception reading plot series data from "
-                    + seriesFiles[0], e);
+                    + seriesFile, e);
             return null;
         } finally {
             IOUtils.closeQuietly(in);
@@ -11,7 +11,11 @@ import hudson.FilePath;
 import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
 import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.Collections;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import net.sf.json.JSONObject;
@@ -23,7 +27,9 @@ import org.kohsuke.stapler.StaplerRequest;
  * @author Nigel Daley
  * @author Allen Reese
  */
-public abstract class Series extends AbstractDescribableImpl<Series> {
+public abstract class Series extends AbstractDescribableImpl<Series> implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final transient Logger LOGGER = Logger.getLogger(Series.class.getName());
     private static final transient Pattern PAT_NAME = Pattern.compile("%name%");
     private static final transient Pattern PAT_INDEX = Pattern.compile("%index%");
     private static final Pattern PAT_BUILD_NUMBER = Pattern.compile("%build%");
@@ -71,16 +77,102 @@ public abstract class Series extends AbstractDescribableImpl<Series> {
         return fileType;
     }
 
+    /**
+     * Whether each class of series overrides {@link #loadSeries}, as series
+     * written before the series files were parsed in the workspace do.
+     */
+    private static final ClassValue<Boolean> LOADS_ITSELF = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<?> c = type; c != null && c != Series.class; c = c.getSuperclass()) {
+                try {
+                    c.getDeclaredMethod("loadSeries", FilePath.class, int.class,
+                            PrintStream.class);
+                    return true;
+                } catch (NoSuchMethodException e) {
+                    // look at the superclass
+                }
+            }
+            return false;
+        }
+    };
+
     /**
      * Retrieves the plot data for one series after a build from the workspace.
+     * When the workspace is on an agent, the series files are parsed there and
+     * only the resulting points are sent back, along with the messages logged
+     * while parsing.
+     * <p>
+     * Subclasses may still override this method to load their data
+     * themselves, in which case it is called on the controller as before.
+     *
+     * @param workspaceRootDir the root directory of the workspace
+     * @param buildNumber      the build Number
+     * @param logger           the logger to use
+     * @return a PlotPoint array of points to plot
+     */
+    public List<PlotPoint> loadSeries(FilePath workspaceRootDir,
+                                      int buildNumber, PrintStream logger) {
+        return WorkspaceScan.loadAll(workspaceRootDir, Collections.singletonList(this),
+                buildNumber, logger).get(0);
+    }
+
+    /**
+     * Parses the plot data for one series from the files of the workspace
+     * matching its file pattern. This runs on the machine that holds the
+     * workspace.
      *
      * @param workspaceRootDir the root directory of the workspace
      * @param buildNumber      the build Number
      * @param logger           the logger to use
      * @return a PlotPoint array of points to plot
      */
-    public abstract List<PlotPoint> loadSeries(FilePath workspaceRootDir,
-                                               int buildNumber, PrintStream logger);
+    protected List<PlotPoint> parseSeries(FilePath workspaceRootDir,
+                                          int buildNumber, PrintStream logger) {
+        FilePath[] seriesFiles;
+        try {
+            seriesFiles = SeriesFiles.sort(workspaceRootDir, workspaceRootDir.list(getFile()));
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Exception trying to retrieve series files", e);
+            return null;
+        }
+        return parseSeries(workspaceRootDir, seriesFiles, new SeriesFileCache(), buildNumber,
+                logger);
+    }
+
+    /**
+     * Parses the plot data for one series from the given files. This runs on
+     * the machine that holds the workspace. The default implementation
+     * delegates to {@link #loadSeries} when a subclass overrides it, as
+     * subclasses did before this method existed, and loads no data
+     * otherwise.
+     *
+     * @param workspaceRootDir the root directory of the workspace
+     * @param seriesFiles      the files matching the file pattern
+     * @param cache            the contents of the files shared with other
+     *                         series of the build
+     * @param buildNumber      the build Number
+     * @param logger           the logger to use
+     * @return a PlotPoint array of points to plot
+     */
+    protected List<PlotPoint> parseSeries(FilePath workspaceRootDir, FilePath[] seriesFiles,
+                                          SeriesFileCache cache, int buildNumber,
+                                          PrintStream logger) {
+        if (!loadsItself()) {
+            LOGGER.log(Level.WARNING, getClass().getName()
+                    + " overrides neither loadSeries nor parseSeries, its series has no data");
+            return null;
+        }
+        return loadSeries(workspaceRootDir, buildNumber, logger);
+    }
+
+    /**
+     * Returns true if the class of this series overrides {@link #loadSeries},
+     * so that it loads its data itself on the controller.
+     */
+    /* package */ final boolean loadsItself() {
+        return LOADS_ITSELF.get(getClass());
+    }
 
     // Convert data from before version 1.3
     private Object readResolve() {
@@ -0,0 +1,148 @@
+package hudson.plugins.plot;
+
+import hudson.FilePath;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * Shares the parsed contents of the series files matched by several series
+ * of a build, so that each of them is read and parsed once.
+ * <p>
+ * Only the files registered with {@link #share(String, int)} are kept, and
+ * only until they have been requested by as many series as registered. A
+ * file is parsed again if its size or modification time changed since it
+ * was parsed. Other files are parsed on every request, as they were before.
+ * <p>
+ * Documents are shared between threads: callers must synchronize on a
+ * document while they use it, as DOM implementations aren't thread safe
+ * even for reading.
+ */
+final class SeriesFileCache {
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Keeps the contents of the file at the given path until they have been
+     * requested the given number of times.
+     */
+    void share(String path, int uses) {
+        if (uses > 1) {
+            entries.put(path, new Entry(uses));
+        }
+    }
+
+    /**
+     * Returns true if the contents of the given file are shared with other
+     * series.
+     */
+    boolean isShared(FilePath file) {
+        return entries.containsKey(file.getRemote());
+    }
+
+    /**
+     * Returns the rows of the given CSV file, header included.
+     */
+    List<String[]> getRows(FilePath file) throws IOException, InterruptedException {
+        Entry entry = entries.get(file.getRemote());
+        if (entry == null) {
+            return readRows(file);
+        }
+        try {
+            synchronized (entry) {
+                if (!(entry.contents instanceof List) || entry.isStale(file)) {
+                    entry.contents = null;
+                    entry.fingerprint = fingerprint(file);
+                    entry.contents = readRows(file);
+                }
+                @SuppressWarnings("unchecked")
+                List<String[]> rows = (List<String[]>) entry.contents;
+                return rows;
+            }
+        } finally {
+            release(file, entry);
+        }
+    }
+
+    /**
+     * Returns the document of the given XML file.
+     */
+    Document getDocument(FilePath file)
+            throws IOException, SAXException, InterruptedException {
+        Entry entry = entries.get(file.getRemote());
+        if (entry == null) {
+            return readDocument(file);
+        }
+        try {
+            synchronized (entry) {
+                if (!(entry.contents instanceof Document) || entry.isStale(file)) {
+                    entry.contents = null;
+                    entry.fingerprint = fingerprint(file);
+                    entry.contents = readDocument(file);
+                }
+                return (Document) entry.contents;
+            }
+        } finally {
+            release(file, entry);
+        }
+    }
+
+    private void release(FilePath file, Entry entry) {
+        synchronized (entry) {
+            if (--entry.uses <= 0) {
+                entries.remove(file.getRemote(), entry);
+            }
+        }
+    }
+
+    private static List<String[]> readRows(FilePath file)
+            throws IOException, InterruptedException {
+        List<String[]> rows = new ArrayList<>();
+        try (CSVTokenizer tokenizer = new CSVTokenizer(
+                new InputStreamReader(file.read(), Charset.defaultCharset()))) {
+            while (tokenizer.next()) {
+                rows.add(tokenizer.toArray());
+            }
+        }
+        return rows;
+    }
+
+    private static Document readDocument(FilePath file)
+            throws IOException, SAXException, InterruptedException {
+        try (InputStream in = file.read()) {
+            return XPathSupport.parse(in);
+        }
+    }
+
+    /**
+     * Identifies the contents of a file by its size and modification time.
+     */
+    private static String fingerprint(FilePath file) {
+        File local = new File(file.getRemote());
+        return local.length() + ":" + local.lastModified();
+    }
+
+    /**
+     * The parsed contents of a shared file, guarded by the entry itself.
+     */
+    private static final class Entry {
+        private int uses;
+        private String fingerprint;
+        private Object contents;
+
+        Entry(int uses) {
+            this.uses = uses;
+        }
+
+        boolean isStale(FilePath file) {
+            return !fingerprint(file).equals(fingerprint);
+        }
+    }
+}
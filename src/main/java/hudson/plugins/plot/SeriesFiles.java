@@ -0,0 +1,160 @@
+package hudson.plugins.plot;
+
+import hudson.FilePath;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import jenkins.util.SystemProperties;
+
+/**
+ * Parses the files matched by a series on a bounded thread pool of the
+ * machine that holds the workspace, so that globs matching many report files
+ * make use of its cores.
+ * <p>
+ * The pool has <code>hudson.plugins.plot.SeriesFiles.threads</code> threads,
+ * shared by all the series parsed on the machine. Results are returned in the
+ * order of the files, which are sorted by path as the order of a directory
+ * scan depends on the file system.
+ */
+final class SeriesFiles {
+    /**
+     * The number of threads parsing series files.
+     */
+    static final int THREADS = SystemProperties.getInteger(
+            SeriesFiles.class.getName() + ".threads",
+            Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private SeriesFiles() {
+    }
+
+    private static ExecutorService createExecutor() {
+        int threads = Math.max(THREADS, 1);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "SeriesFiles"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Parses each of the given files, in parallel when there are several.
+     *
+     * @param files  the files to parse
+     * @param parser parses one file
+     * @return the result of each file, in the order of the files
+     * @throws InterruptedException if interrupted while waiting, in which
+     *                              case the remaining files are not parsed
+     */
+    static <T> List<T> parseAll(FilePath[] files, Function<FilePath, T> parser)
+            throws InterruptedException {
+        List<T> results = new ArrayList<>(files.length);
+        if (files.length == 1 || THREADS <= 1) {
+            for (FilePath file : files) {
+                results.add(parser.apply(file));
+            }
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<>(files.length);
+        try {
+            for (FilePath file : files) {
+                futures.add(EXECUTOR.submit(() -> parser.apply(file)));
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Concatenates the points parsed from each file.
+     *
+     * @param workspaceRootDir the root directory of the workspace
+     * @param files            the parsed files
+     * @param results          the points of each file, null for a file that
+     *                         couldn't be parsed
+     * @param labelByFile      whether to append the path of its file to the
+     *                         label of each point of the files after the first
+     * @return the points, or null if no file could be parsed
+     */
+    static List<PlotPoint> merge(FilePath workspaceRootDir, FilePath[] files,
+                                 List<List<PlotPoint>> results, boolean labelByFile) {
+        List<PlotPoint> points = null;
+        for (int i = 0; i < files.length; i++) {
+            List<PlotPoint> filePoints = results.get(i);
+            if (filePoints == null) {
+                continue;
+            }
+            // only the first file was read before, so its labels are kept as
+            // they were for the history of the plot to go on
+            if (labelByFile && i > 0) {
+                String suffix = " (" + relativePath(workspaceRootDir, files[i]) + ")";
+                for (PlotPoint point : filePoints) {
+                    if (point != null) {
+                        point.setLabel(point.getLabel() + suffix);
+                    }
+                }
+            }
+            if (points == null) {
+                points = new ArrayList<>(filePoints);
+            } else {
+                points.addAll(filePoints);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Sorts the given files by their path relative to the workspace, so that
+     * the first file, whose points keep their plain labels, is the same from
+     * one build to the next.
+     *
+     * @return the given array, sorted
+     */
+    static FilePath[] sort(FilePath workspaceRootDir, FilePath[] files) {
+        Arrays.sort(files, Comparator.comparing(file -> relativePath(workspaceRootDir, file)));
+        return files;
+    }
+
+    /**
+     * Returns the path of the given file relative to the workspace, with
+     * forward slashes, to tell apart the points of different files.
+     */
+    static String relativePath(FilePath workspaceRootDir, FilePath file) {
+        String root = workspaceRootDir.getRemote();
+        String path = file.getRemote();
+        if (path.startsWith(root)) {
+            path = path.substring(root.length());
+        }
+        path = path.replace('\\', '/');
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,458 @@
+package hudson.plugins.plot;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Evaluates a subset of XPath in a single streaming pass over a document, so
+ * that large XML series files don't have to be loaded as a DOM.
+ * <p>
+ * The supported expressions are unions of absolute location paths made of
+ * child (<code>/</code>) and descendant (<code>//</code>) steps that select
+ * elements by name or <code>*</code>, each with any number of attribute
+ * predicates such as <code>[@name]</code> or <code>[@name='value']</code>,
+ * optionally followed by a final <code>/@attribute</code> step. Every selected
+ * node is reported in document order with what {@link XMLSeries} reads from
+ * it: its name, text content, attributes and parent. Documents with a DTD,
+ * entity references or namespaces are left to the DOM.
+ */
+final class StreamingXPath {
+    private static final String NAME = "[A-Za-z_][\\w.-]*";
+
+    private static final String VALUE = "(?:'([^']*)'|\"([^\"]*)\")";
+
+    private static final Pattern ELEMENT_STEP = Pattern.compile("(\\*|" + NAME + ")");
+
+    private static final Pattern PREDICATE = Pattern.compile(
+            "\\[\\s*@(" + NAME + ")\\s*(?:=\\s*" + VALUE + "\\s*)?\\]");
+
+    private static final Pattern ATTRIBUTE_STEP = Pattern.compile("@(" + NAME + ")");
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    /**
+     * Parent id of the selected attributes, which have no parent in the DOM.
+     */
+    static final int NO_PARENT = -1;
+
+    private static final BitSet NO_STATES = new BitSet();
+
+    private final Path[] paths;
+
+    private StreamingXPath(Path[] paths) {
+        this.paths = paths;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        return factory;
+    }
+
+    /**
+     * Compiles the given expression.
+     *
+     * @return the compiled expression, or null if it is outside the subset
+     * that can be streamed
+     */
+    static StreamingXPath compile(String expression) {
+        if (expression == null) {
+            return null;
+        }
+        List<String> branches = splitUnion(expression);
+        if (branches == null) {
+            return null;
+        }
+        Path[] paths = new Path[branches.size()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = Path.compile(branches.get(i).trim());
+            if (paths[i] == null) {
+                return null;
+            }
+        }
+        return new StreamingXPath(paths);
+    }
+
+    /**
+     * Splits an expression on the union operators outside of quotes.
+     */
+    private static List<String> splitUnion(String expression) {
+        List<String> branches = new ArrayList<>();
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '|') {
+                branches.add(expression.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (quote != 0) {
+            return null;
+        }
+        branches.add(expression.substring(start));
+        return branches;
+    }
+
+    /**
+     * Selects the nodes of the given document.
+     *
+     * @param in        the document
+     * @param firstOnly stop after the first selected node
+     * @return the selected nodes in document order, or null if the document
+     * has to be evaluated as a DOM
+     * @throws XMLStreamException if the document is not well-formed
+     */
+    List<Match> evaluate(InputStream in, boolean firstOnly) throws XMLStreamException {
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+        try {
+            return evaluate(reader, firstOnly);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private List<Match> evaluate(XMLStreamReader reader, boolean firstOnly)
+            throws XMLStreamException {
+        List<Match> matches = new ArrayList<>();
+        // the selected elements that are still open, which collect text content
+        List<Match> open = new ArrayList<>();
+        Deque<Frame> stack = new ArrayDeque<>();
+        BitSet[] initial = new BitSet[paths.length];
+        for (int p = 0; p < paths.length; p++) {
+            initial[p] = new BitSet();
+            initial[p].set(0);
+        }
+        stack.push(new Frame(initial, 0, null));
+        int nextId = 1;
+
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (!isPlain(reader)) {
+                        return null;
+                    }
+                    Frame parent = stack.peek();
+                    Frame frame = new Frame(new BitSet[paths.length], nextId++, null);
+                    boolean selected = false;
+                    List<String> attributes = null;
+                    for (int p = 0; p < paths.length; p++) {
+                        Path path = paths[p];
+                        BitSet states = NO_STATES;
+                        BitSet active = parent.states[p];
+                        for (int k = active.nextSetBit(0); k >= 0; k = active.nextSetBit(k + 1)) {
+                            Step step = path.steps[k];
+                            if (step.descendant) {
+                                states = set(states, k);
+                            }
+                            if (!step.matches(reader)) {
+                                continue;
+                            }
+                            if (k + 1 < path.steps.length) {
+                                states = set(states, k + 1);
+                            } else if (path.attribute == null) {
+                                selected = true;
+                            } else if (reader.getAttributeValue(null, path.attribute) != null) {
+                                if (attributes == null) {
+                                    attributes = new ArrayList<>();
+                                }
+                                attributes.add(path.attribute);
+                            }
+                        }
+                        frame.states[p] = states;
+                    }
+                    if (selected) {
+                        frame.match = new Match(false, reader.getLocalName(), parent.id,
+                                frame.id, attributes(reader));
+                        matches.add(frame.match);
+                        open.add(frame.match);
+                    }
+                    if (attributes != null) {
+                        // attributes follow their element, in the order of the DOM
+                        Collections.sort(attributes);
+                        String previous = null;
+                        for (String name : attributes) {
+                            if (!name.equals(previous)) {
+                                matches.add(Match.attribute(name,
+                                        reader.getAttributeValue(null, name)));
+                            }
+                            previous = name;
+                        }
+                        if (firstOnly && !selected) {
+                            return matches;
+                        }
+                    }
+                    stack.push(frame);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    Frame closed = stack.pop();
+                    if (closed.match != null) {
+                        open.remove(open.size() - 1);
+                        closed.match.close();
+                        if (firstOnly && closed.match == matches.get(0)) {
+                            return matches;
+                        }
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (!open.isEmpty()) {
+                        String text = reader.getText();
+                        for (Match match : open) {
+                            match.text.append(text);
+                        }
+                    }
+                    break;
+                case XMLStreamConstants.DTD:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    return null;
+                default:
+                    break;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns true if the current element uses no namespaces.
+     */
+    private static boolean isPlain(XMLStreamReader reader) {
+        if (reader.getNamespaceCount() > 0 || !isEmpty(reader.getPrefix())) {
+            return false;
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (!isEmpty(reader.getAttributePrefix(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isEmpty(String s) {
+        return s == null || s.isEmpty();
+    }
+
+    private static BitSet set(BitSet states, int k) {
+        BitSet result = states == NO_STATES ? new BitSet() : states;
+        result.set(k);
+        return result;
+    }
+
+    /**
+     * Returns the attributes of the current element sorted by name, which is
+     * the order of the DOM.
+     */
+    private static Map<String, String> attributes(XMLStreamReader reader) {
+        if (reader.getAttributeCount() == 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> attributes = new TreeMap<>();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+        return attributes;
+    }
+
+    /**
+     * An open element and the steps of each path that its children can match.
+     */
+    private static final class Frame {
+        private final BitSet[] states;
+        private final int id;
+        private Match match;
+
+        Frame(BitSet[] states, int id, Match match) {
+            this.states = states;
+            this.id = id;
+            this.match = match;
+        }
+    }
+
+    /**
+     * A location path of the union.
+     */
+    private static final class Path {
+        private final Step[] steps;
+        private final String attribute;
+
+        private Path(Step[] steps, String attribute) {
+            this.steps = steps;
+            this.attribute = attribute;
+        }
+
+        static Path compile(String expression) {
+            List<Step> steps = new ArrayList<>();
+            String attribute = null;
+            int pos = 0;
+            while (pos < expression.length()) {
+                if (attribute != null || expression.charAt(pos) != '/') {
+                    return null;
+                }
+                boolean descendant = expression.startsWith("//", pos);
+                pos += descendant ? 2 : 1;
+
+                Matcher m = ATTRIBUTE_STEP.matcher(expression).region(pos, expression.length());
+                if (m.lookingAt()) {
+                    if (descendant || steps.isEmpty()) {
+                        return null;
+                    }
+                    attribute = m.group(1);
+                    pos = m.end();
+                    continue;
+                }
+                m = ELEMENT_STEP.matcher(expression).region(pos, expression.length());
+                if (!m.lookingAt()) {
+                    return null;
+                }
+                String name = "*".equals(m.group(1)) ? null : m.group(1);
+                pos = m.end();
+                List<String[]> predicates = new ArrayList<>();
+                m = PREDICATE.matcher(expression);
+                while (m.region(pos, expression.length()).lookingAt()) {
+                    String value = m.group(2) != null ? m.group(2) : m.group(3);
+                    predicates.add(new String[]{m.group(1), value});
+                    pos = m.end();
+                }
+                steps.add(new Step(name, descendant, predicates.toArray(new String[0][])));
+            }
+            return steps.isEmpty() ? null : new Path(steps.toArray(new Step[0]), attribute);
+        }
+    }
+
+    /**
+     * An element step with its attribute predicates.
+     */
+    private static final class Step {
+        private final String name;
+        private final boolean descendant;
+        private final String[][] predicates;
+
+        Step(String name, boolean descendant, String[][] predicates) {
+            this.name = name;
+            this.descendant = descendant;
+            this.predicates = predicates;
+        }
+
+        boolean matches(XMLStreamReader reader) {
+            if (name != null && !name.equals(reader.getLocalName())) {
+                return false;
+            }
+            for (String[] predicate : predicates) {
+                String value = reader.getAttributeValue(null, predicate[0]);
+                if (value == null || (predicate[1] != null && !predicate[1].equals(value))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A selected element or attribute.
+     */
+    static final class Match {
+        private final boolean attribute;
+        private final String name;
+        private final int parent;
+        private final int id;
+        private final Map<String, String> attributes;
+        private StringBuilder text = new StringBuilder();
+        private String textContent;
+
+        private Match(boolean attribute, String name, int parent, int id,
+                      Map<String, String> attributes) {
+            this.attribute = attribute;
+            this.name = name;
+            this.parent = parent;
+            this.id = id;
+            this.attributes = attributes;
+        }
+
+        static Match attribute(String name, String value) {
+            Match match = new Match(true, name, NO_PARENT, NO_PARENT,
+                    Collections.<String, String>emptyMap());
+            match.text.append(value);
+            match.close();
+            return match;
+        }
+
+        private void close() {
+            textContent = text.toString();
+            text = null;
+        }
+
+        boolean isAttribute() {
+            return attribute;
+        }
+
+        /**
+         * Returns the element or attribute name.
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the id of the parent element, which is 0 for the root
+         * element and {@link #NO_PARENT} for attributes.
+         */
+        int getParent() {
+            return parent;
+        }
+
+        /**
+         * Returns the id of the element, unique within the document.
+         */
+        int getId() {
+            return id;
+        }
+
+        /**
+         * Returns the value of the given attribute of the element, or null.
+         */
+        String getAttribute(String attributeName) {
+            return attributes.get(attributeName);
+        }
+
+        /**
+         * Returns the attributes of the element as matches, sorted by name.
+         */
+        List<Match> getAttributes() {
+            List<Match> result = new ArrayList<>(attributes.size());
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                result.add(attribute(entry.getKey(), entry.getValue()));
+            }
+            return result;
+        }
+
+        /**
+         * Returns the text content of the element, or the value of the
+         * attribute.
+         */
+        String getText() {
+            return textContent;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package hudson.plugins.plot;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+/**
+ * Loads the series of all the plots of a build with a single call to the
+ * machine that holds the workspace and a single scan of the workspace.
+ * <p>
+ * The file patterns of all the series are resolved at once, the same way
+ * {@link FilePath#list(String)} resolves each of them, and each series then
+ * parses the files matched by its own pattern. A series whose pattern can't
+ * be part of the scan, such as an absolute path, lists its files itself.
+ * Series that override {@link Series#loadSeries} are loaded by it on the
+ * controller, as before.
+ */
+final class WorkspaceScan {
+    private static final Logger LOGGER = Logger.getLogger(WorkspaceScan.class.getName());
+
+    private WorkspaceScan() {
+    }
+
+    /**
+     * Retrieves the plot data of the given series after a build from the
+     * workspace. When the workspace is on an agent, the series files are
+     * parsed there and only the resulting points are sent back, along with
+     * the messages logged while parsing.
+     *
+     * @param workspaceRootDir the root directory of the workspace
+     * @param series           the series to load, may contain nulls
+     * @param buildNumber      the build number
+     * @param logger           the logger to use
+     * @return the points of each series, in the order of the series, null for
+     *         a series without points
+     */
+    static List<List<PlotPoint>> loadAll(FilePath workspaceRootDir, List<Series> series,
+                                         int buildNumber, PrintStream logger) {
+        List<Series> parsed = new ArrayList<>(series.size());
+        for (Series s : series) {
+            parsed.add(s != null && s.loadsItself() ? null : s);
+        }
+        List<List<PlotPoint>> points = parseAll(workspaceRootDir, parsed, buildNumber, logger);
+        for (int i = 0; i < series.size(); i++) {
+            Series s = series.get(i);
+            if (s != null && s.loadsItself()) {
+                points.set(i, s.loadSeries(workspaceRootDir, buildNumber, logger));
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Parses the given series on the machine that holds the workspace.
+     */
+    private static List<List<PlotPoint>> parseAll(FilePath workspaceRootDir,
+                                                  List<Series> series, int buildNumber,
+                                                  PrintStream logger) {
+        if (series.stream().allMatch(Objects::isNull)) {
+            return new ArrayList<>(Collections.nCopies(series.size(), null));
+        }
+        if (!workspaceRootDir.isRemote()) {
+            return parseLocal(workspaceRootDir, series, buildNumber, logger);
+        }
+        ParsedSeries parsed;
+        try {
+            parsed = workspaceRootDir.act(new ParseSeries(series, buildNumber));
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Exception parsing plot series data on "
+                    + workspaceRootDir, e);
+            return new ArrayList<>(Collections.nCopies(series.size(), null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ArrayList<>(Collections.nCopies(series.size(), null));
+        }
+        if (logger != null) {
+            logger.print(parsed.log);
+        }
+        return parsed.points;
+    }
+
+    /**
+     * Parses the given series from the workspace. This runs on the machine
+     * that holds the workspace.
+     */
+    private static List<List<PlotPoint>> parseLocal(FilePath workspaceRootDir,
+                                                    List<Series> series, int buildNumber,
+                                                    PrintStream logger) {
+        List<List<String>> patterns = new ArrayList<>(series.size());
+        Set<String> includes = new LinkedHashSet<>();
+        for (Series s : series) {
+            List<String> seriesPatterns = s != null ? patterns(s.getFile()) : null;
+            patterns.add(seriesPatterns);
+            if (seriesPatterns != null) {
+                includes.addAll(seriesPatterns);
+            }
+        }
+
+        String[] files = null;
+        if (!includes.isEmpty()) {
+            files = scan(new File(workspaceRootDir.getRemote()), includes);
+        }
+
+        // files matched by several series are parsed once
+        List<FilePath[]> seriesFiles = new ArrayList<>(series.size());
+        Map<String, Integer> uses = new HashMap<>();
+        for (List<String> seriesPatterns : patterns) {
+            FilePath[] selected = null;
+            if (files != null && seriesPatterns != null) {
+                selected = select(workspaceRootDir, files, seriesPatterns);
+                for (FilePath file : selected) {
+                    uses.merge(file.getRemote(), 1, Integer::sum);
+                }
+            }
+            seriesFiles.add(selected);
+        }
+        SeriesFileCache cache = new SeriesFileCache();
+        uses.forEach(cache::share);
+
+        List<List<PlotPoint>> points = new ArrayList<>(series.size());
+        for (int i = 0; i < series.size(); i++) {
+            Series s = series.get(i);
+            if (s == null) {
+                points.add(null);
+            } else if (seriesFiles.get(i) == null) {
+                points.add(s.parseSeries(workspaceRootDir, buildNumber, logger));
+            } else {
+                points.add(s.parseSeries(workspaceRootDir, seriesFiles.get(i), cache,
+                        buildNumber, logger));
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Splits a file pattern into the patterns of a scan, normalized the way
+     * the scan normalizes them.
+     *
+     * @return the patterns, or null if the pattern can't be part of a scan
+     */
+    private static List<String> patterns(String file) {
+        if (file == null) {
+            return null;
+        }
+        List<String> patterns = new ArrayList<>();
+        StringTokenizer tokens = new StringTokenizer(file, ",");
+        while (tokens.hasMoreTokens()) {
+            String pattern = tokens.nextToken().trim();
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            if (pattern.startsWith("/") || pattern.startsWith("\\")
+                    || new File(pattern).isAbsolute()) {
+                return null;
+            }
+            pattern = pattern.replace('/', File.separatorChar)
+                    .replace('\\', File.separatorChar);
+            if (pattern.endsWith(File.separator)) {
+                pattern += "**";
+            }
+            patterns.add(pattern);
+        }
+        // an empty pattern matches every file
+        return patterns.isEmpty() ? null : patterns;
+    }
+
+    /**
+     * Returns the paths of the files of the directory matching any of the
+     * given patterns, relative to the directory.
+     *
+     * @return the paths, or null if the directory couldn't be scanned
+     */
+    private static String[] scan(File directory, Set<String> includes) {
+        if (!directory.isDirectory()) {
+            return null;
+        }
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(directory);
+        scanner.setIncludes(includes.toArray(new String[0]));
+        scanner.addDefaultExcludes();
+        try {
+            scanner.scan();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Exception scanning " + directory, e);
+            return null;
+        }
+        return scanner.getIncludedFiles();
+    }
+
+    /**
+     * Returns the files among the scanned ones that match any of the given
+     * patterns, sorted by path.
+     */
+    private static FilePath[] select(FilePath workspaceRootDir, String[] files,
+                                     List<String> patterns) {
+        List<FilePath> selected = new ArrayList<>();
+        for (String file : files) {
+            for (String pattern : patterns) {
+                if (SelectorUtils.matchPath(pattern, file)) {
+                    selected.add(new FilePath(workspaceRootDir, file));
+                    break;
+                }
+            }
+        }
+        return SeriesFiles.sort(workspaceRootDir, selected.toArray(new FilePath[0]));
+    }
+
+    /**
+     * Parses series in the workspace of an agent.
+     */
+    private static final class ParseSeries extends MasterToSlaveFileCallable<ParsedSeries> {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<Series> series;
+        private final int buildNumber;
+
+        ParseSeries(List<Series> series, int buildNumber) {
+            this.series = new ArrayList<>(series);
+            this.buildNumber = buildNumber;
+        }
+
+        @Override
+        public ParsedSeries invoke(File workspace, VirtualChannel channel) throws IOException {
+            ByteArrayOutputStream log = new ByteArrayOutputStream();
+            List<List<PlotPoint>> points;
+            // charset names rather than Charsets, as agents may still run Java 8
+            try (PrintStream logger = new PrintStream(log, true, "UTF-8")) {
+                points = parseLocal(new FilePath(workspace), series, buildNumber, logger);
+            }
+            return new ParsedSeries(points, log.toString("UTF-8"));
+        }
+    }
+
+    /**
+     * The points parsed on an agent and the messages logged while parsing.
+     */
+    private static final class ParsedSeries implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<List<PlotPoint>> points;
+        private final String log;
+
+        ParsedSeries(List<List<PlotPoint>> points, String log) {
+            this.points = new ArrayList<>(points.size());
+            for (List<PlotPoint> seriesPoints : points) {
+                this.points.add(seriesPoints != null ? new ArrayList<>(seriesPoints) : null);
+            }
+            this.log = log;
+        }
+    }
+}
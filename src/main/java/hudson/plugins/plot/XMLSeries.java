@@ -17,29 +17,26 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.Scanner;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.xml.namespace.QName;
-import javax.xml.xpath.XPath;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
-import jenkins.util.xml.XMLUtils;
 import net.sf.json.JSONObject;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.StaplerRequest;
+import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -48,6 +45,7 @@ import org.xml.sax.SAXException;
  * @author Allen Reese
  */
 public class XMLSeries extends Series {
+    private static final long serialVersionUID = 1L;
     private static final transient Logger LOGGER = Logger.getLogger(XMLSeries.class.getName());
     // Debugging hack, so I don't have to change FINE/INFO...
     private static final transient Level DEFAULT_LOG_LEVEL = Level.INFO;
@@ -87,6 +85,11 @@ public class XMLSeries extends Series {
      */
     private transient QName nodeType;
 
+    /**
+     * The XPath compiled for streaming evaluation, or null if it needs a DOM.
+     */
+    private transient StreamingXPath streamingXPath;
+
     @DataBoundConstructor
     public XMLSeries(String file, String xpath, String nodeType, String url) {
         super(file, "", "xml");
@@ -95,11 +98,13 @@ public class XMLSeries extends Series {
         this.nodeTypeString = nodeType;
         this.nodeType = Q_NAME_MAP.get(nodeType);
         this.url = url;
+        this.streamingXPath = StreamingXPath.compile(xpath);
     }
 
     private Object readResolve() {
         // Set nodeType when deserialized
         nodeType = Q_NAME_MAP.get(nodeTypeString);
+        streamingXPath = StreamingXPath.compile(xpathString);
         return this;
     }
 
@@ -141,7 +146,7 @@ public class XMLSeries extends Series {
      * each set of nodes under a given parent.
      */
     private List<PlotPoint> coalesceTextnodesAsLabelsStrategy(NodeList nodeList, int buildNumber) {
-        Map<Node, List<Node>> parentNodeMap = new HashMap<>();
+        Map<Node, List<Node>> parentNodeMap = new LinkedHashMap<>();
 
         for (int i = 0; i < nodeList.getLength(); i++) {
             Node node = nodeList.item(i);
@@ -167,8 +172,8 @@ public class XMLSeries extends Series {
                     }
                     parentNodeMap.put(child, attrs);
                     parents.add(child);
-                } else if (new Scanner(child.getTextContent().trim()).hasNextDouble()) {
-                    value = new Scanner(child.getTextContent().trim()).nextDouble();
+                } else if (NumericText.isDouble(child.getTextContent().trim())) {
+                    value = NumericText.parseDouble(child.getTextContent().trim());
                 } else {
                     label = child.getTextContent().trim();
                 }
@@ -181,108 +186,224 @@ public class XMLSeries extends Series {
     }
 
     /**
-     * Load the series from a properties file.
+     * Load the series from every XML file matching the file pattern. When
+     * several files match, the points of all but the first file by path are
+     * labelled with their file.
      */
     @Override
-    public List<PlotPoint> loadSeries(FilePath workspaceRootDir, int buildNumber,
-                                      PrintStream logger) {
-        InputStream in = null;
-        InputSource inputSource;
+    protected List<PlotPoint> parseSeries(FilePath workspaceRootDir, FilePath[] seriesFiles,
+                                          SeriesFileCache cache, int buildNumber,
+                                          PrintStream logger) {
+        if (ArrayUtils.isEmpty(seriesFiles)) {
+            LOGGER.info("No plot data file found: " + getFile());
+            return null;
+        }
 
         try {
-            List<PlotPoint> ret = new ArrayList<>();
-            FilePath[] seriesFiles;
-
-            try {
-                seriesFiles = workspaceRootDir.list(getFile());
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Exception trying to retrieve series files", e);
-                return null;
-            }
-
-            if (ArrayUtils.isEmpty(seriesFiles)) {
-                LOGGER.info("No plot data file found: " + getFile());
-                return null;
-            }
+            return SeriesFiles.merge(workspaceRootDir, seriesFiles, SeriesFiles.parseAll(
+                    seriesFiles, f -> loadSeriesFile(f, cache, buildNumber, logger)), true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
 
-            try {
-                if (LOGGER.isLoggable(DEFAULT_LOG_LEVEL)) {
-                    LOGGER.log(DEFAULT_LOG_LEVEL, "Loading plot series data from: " + getFile());
+    /**
+     * Load the series from one XML file. A file shared with other series is
+     * loaded as a DOM, parsed once for all of them.
+     */
+    private List<PlotPoint> loadSeriesFile(FilePath seriesFile, SeriesFileCache cache,
+                                           int buildNumber, PrintStream logger) {
+        try {
+            if (!cache.isShared(seriesFile)) {
+                List<PlotPoint> streamed = streamSeries(seriesFile, buildNumber);
+                if (streamed != null) {
+                    return streamed;
                 }
-                in = seriesFiles[0].read();
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE,
-                        "Exception reading plot series data from " + seriesFiles[0], e);
-                return null;
             }
 
             if (LOGGER.isLoggable(DEFAULT_LOG_LEVEL)) {
-                LOGGER.log(DEFAULT_LOG_LEVEL, "NodeType " + nodeTypeString + " : " + nodeType);
+                LOGGER.log(DEFAULT_LOG_LEVEL, "Loading plot series data from: " + getFile());
             }
+            Document document = cache.getDocument(seriesFile);
 
-            if (LOGGER.isLoggable(DEFAULT_LOG_LEVEL)) {
-                LOGGER.log(DEFAULT_LOG_LEVEL, "Loaded XML Plot file: " + getFile());
+            // documents shared with other series are used by one thread at a time
+            synchronized (document) {
+                return evaluate(document, buildNumber);
+            }
+        } catch (XPathExpressionException e) {
+            LOGGER.log(Level.SEVERE, "XPathExpressionException for XPath '" + getXpath() + "'", e);
+        }  catch (SAXException e) {
+            if (logger != null) {
+                logger.println(e.getMessage());
             }
+            LOGGER.log(Level.SEVERE, "Exception parsing XML", e);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Unexpected IO Error", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return null;
+    }
+
+    /**
+     * Evaluates the XPath on the document of a series file.
+     */
+    private List<PlotPoint> evaluate(Document document, int buildNumber)
+            throws XPathExpressionException {
+        List<PlotPoint> ret = new ArrayList<>();
+
+        if (LOGGER.isLoggable(DEFAULT_LOG_LEVEL)) {
+            LOGGER.log(DEFAULT_LOG_LEVEL, "NodeType " + nodeTypeString + " : " + nodeType);
+        }
 
+        if (LOGGER.isLoggable(DEFAULT_LOG_LEVEL)) {
+            LOGGER.log(DEFAULT_LOG_LEVEL, "Loaded XML Plot file: " + getFile());
+        }
 
-            XPath xpath = XPathFactory.newInstance().newXPath();
-            Object xmlObject = xpath.evaluate(xpathString, XMLUtils.parse(in), nodeType);
+        Object xmlObject = XPathSupport.compile(xpathString)
+                .evaluate(document, nodeType);
 
+        /*
+         * If we have a nodeset, we need multiples, otherwise we just need
+         * one value, and can do a toString() to set it.
+         */
+        if (nodeType.equals(XPathConstants.NODESET)) {
+            NodeList nl = (NodeList) xmlObject;
+            if (LOGGER.isLoggable(DEFAULT_LOG_LEVEL)) {
+                LOGGER.log(DEFAULT_LOG_LEVEL, "Number of nodes: " + nl.getLength());
+            }
 
-            /*
-             * If we have a nodeset, we need multiples, otherwise we just need
-             * one value, and can do a toString() to set it.
-             */
-            if (nodeType.equals(XPathConstants.NODESET)) {
+            for (int i = 0; i < nl.getLength(); i++) {
+                Node node = nl.item(i);
+                if (!NumericText.isDouble(node.getTextContent().trim())) {
+                    return coalesceTextnodesAsLabelsStrategy(nl, buildNumber);
+                }
+            }
+            return mapNodeNameAsLabelTextContentAsValueStrategy(nl, buildNumber);
+        } else if (nodeType.equals(XPathConstants.NODE)) {
+            addNodeToList(ret, (Node) xmlObject, buildNumber);
+        } else {
+            // otherwise we have a single type and can do a toString on it.
+            if (xmlObject instanceof NodeList) {
                 NodeList nl = (NodeList) xmlObject;
+
                 if (LOGGER.isLoggable(DEFAULT_LOG_LEVEL)) {
                     LOGGER.log(DEFAULT_LOG_LEVEL, "Number of nodes: " + nl.getLength());
                 }
 
                 for (int i = 0; i < nl.getLength(); i++) {
-                    Node node = nl.item(i);
-                    if (!new Scanner(node.getTextContent().trim()).hasNextDouble()) {
-                        return coalesceTextnodesAsLabelsStrategy(nl, buildNumber);
+                    Node n = nl.item(i);
+
+                    if (n != null && n.getLocalName() != null && n.getTextContent() != null) {
+                        addValueToList(ret, label, xmlObject, buildNumber);
                     }
                 }
-                return mapNodeNameAsLabelTextContentAsValueStrategy(nl, buildNumber);
-            } else if (nodeType.equals(XPathConstants.NODE)) {
-                addNodeToList(ret, (Node) xmlObject, buildNumber);
             } else {
-                // otherwise we have a single type and can do a toString on it.
-                if (xmlObject instanceof NodeList) {
-                    NodeList nl = (NodeList) xmlObject;
+                addValueToList(ret, label, xmlObject, buildNumber);
+            }
+        }
+        return ret;
+    }
 
-                    if (LOGGER.isLoggable(DEFAULT_LOG_LEVEL)) {
-                        LOGGER.log(DEFAULT_LOG_LEVEL, "Number of nodes: " + nl.getLength());
-                    }
+    /**
+     * Evaluates the XPath while streaming the series file, when both the
+     * XPath and the file allow it. This gives the same points as evaluating
+     * it on the DOM without holding the whole document in memory.
+     *
+     * @return the points, or null if the file has to be loaded as a DOM
+     */
+    private List<PlotPoint> streamSeries(FilePath seriesFile, int buildNumber) {
+        if (streamingXPath == null || !(nodeType.equals(XPathConstants.NODESET)
+                || nodeType.equals(XPathConstants.NODE))) {
+            return null;
+        }
+        List<StreamingXPath.Match> matches;
+        try (InputStream in = seriesFile.read()) {
+            matches = streamingXPath.evaluate(in, nodeType.equals(XPathConstants.NODE));
+        } catch (IOException | XMLStreamException e) {
+            LOGGER.log(Level.FINE, "Falling back to DOM for " + seriesFile, e);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (matches == null) {
+            return null;
+        }
 
-                    for (int i = 0; i < nl.getLength(); i++) {
-                        Node n = nl.item(i);
+        List<PlotPoint> ret = new ArrayList<>();
+        if (nodeType.equals(XPathConstants.NODE)) {
+            if (matches.isEmpty()) {
+                return null;
+            }
+            addMatchToList(ret, matches.get(0), buildNumber);
+            return ret;
+        }
+        if (LOGGER.isLoggable(DEFAULT_LOG_LEVEL)) {
+            LOGGER.log(DEFAULT_LOG_LEVEL, "Number of nodes: " + matches.size());
+        }
+        for (StreamingXPath.Match match : matches) {
+            if (!NumericText.isDouble(match.getText().trim())) {
+                return coalesceMatchesAsLabels(matches, buildNumber);
+            }
+        }
+        for (StreamingXPath.Match match : matches) {
+            addMatchToList(ret, match, buildNumber);
+        }
+        return ret;
+    }
 
-                        if (n != null && n.getLocalName() != null && n.getTextContent() != null) {
-                            addValueToList(ret, label, xmlObject, buildNumber);
-                        }
+    /**
+     * Same as {@link #coalesceTextnodesAsLabelsStrategy(NodeList, int)} for
+     * streamed nodes.
+     *
+     * @return the points, or null if the nodes have to be coalesced on the DOM
+     */
+    private List<PlotPoint> coalesceMatchesAsLabels(List<StreamingXPath.Match> matches,
+                                                    int buildNumber) {
+        Map<Integer, List<StreamingXPath.Match>> parentMatchMap = new LinkedHashMap<>();
+        for (StreamingXPath.Match match : matches) {
+            parentMatchMap.computeIfAbsent(match.getParent(), k -> new ArrayList<>()).add(match);
+        }
+
+        List<PlotPoint> retval = new ArrayList<>();
+        Queue<Integer> parents = new ArrayDeque<>(parentMatchMap.keySet());
+        while (!parents.isEmpty()) {
+            Integer parent = parents.poll();
+            Double value = null;
+            String label = null;
+
+            for (StreamingXPath.Match child : parentMatchMap.get(parent)) {
+                String text = child.getText().trim();
+                if (text.isEmpty()) {
+                    // empty attributes and nodes that are also parents are
+                    // left to the DOM strategy
+                    if (child.isAttribute() || parentMatchMap.containsKey(child.getId())) {
+                        return null;
                     }
+                    parentMatchMap.put(child.getId(), child.getAttributes());
+                    parents.add(child.getId());
+                } else if (NumericText.isDouble(text)) {
+                    value = NumericText.parseDouble(text);
                 } else {
-                    addValueToList(ret, label, xmlObject, buildNumber);
+                    label = text;
                 }
             }
-            return ret;
-        } catch (XPathExpressionException e) {
-            LOGGER.log(Level.SEVERE, "XPathExpressionException for XPath '" + getXpath() + "'", e);
-        }  catch (SAXException e) {
-            if (logger != null) {
-                logger.println(e.getMessage());
+            if ((label != null) && (value != null)) {
+                addValueToList(retval, label, String.valueOf(value), buildNumber);
             }
-            LOGGER.log(Level.SEVERE, "Exception parsing XML", e);
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Unexpected IO Error", e);
-        } finally {
-            IOUtils.closeQuietly(in);
         }
+        return retval;
+    }
 
-        return null;
+    private void addMatchToList(List<PlotPoint> ret, StreamingXPath.Match match,
+                                int buildNumber) {
+        String name = match.getAttribute("name");
+        String time = match.getAttribute("time");
+        addValueToList(ret, name != null ? name.trim() : match.getName().trim(),
+                time != null ? time : match.getText().trim(), buildNumber);
     }
 
     private void addNodeToList(List<PlotPoint> ret, Node n, int buildNumber) {
@@ -341,9 +462,8 @@ public class XMLSeries extends Series {
 
         // for Node/String/NodeSet, try and parse it as a double.
         // we don't store a double, so just throw away the result.
-        Scanner scanner = new Scanner(ret);
-        if (scanner.hasNextDouble()) {
-            return String.valueOf(scanner.nextDouble());
+        if (NumericText.isDouble(ret)) {
+            return String.valueOf(NumericText.parseDouble(ret));
         }
         return null;
     }
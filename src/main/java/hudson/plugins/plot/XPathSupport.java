@@ -0,0 +1,133 @@
+package hudson.plugins.plot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import jenkins.util.SystemProperties;
+import org.w3c.dom.Document;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.SAXException;
+
+/**
+ * Keeps the compiled XPath expressions and the document builder of
+ * {@link XMLSeries} for reuse by later series on the same thread, since
+ * neither is thread safe and both are expensive to create.
+ * <p>
+ * Each thread holds at most
+ * <code>hudson.plugins.plot.XPathSupport.cacheSize</code> compiled
+ * expressions and drops the least recently used ones first. Documents are
+ * parsed with the same protections as {@link jenkins.util.xml.XMLUtils}:
+ * doctype declarations, external entities and XInclude are refused.
+ */
+final class XPathSupport {
+    private static final Logger LOGGER = Logger.getLogger(XPathSupport.class.getName());
+
+    /**
+     * The number of compiled expressions kept by each thread.
+     */
+    static final int CACHE_SIZE = SystemProperties.getInteger(
+            XPathSupport.class.getName() + ".cacheSize", 64);
+
+    private static final String DISALLOW_DOCTYPE_DECL =
+            "http://apache.org/xml/features/disallow-doctype-decl";
+
+    private static final String EXTERNAL_GENERAL_ENTITIES =
+            "http://xml.org/sax/features/external-general-entities";
+
+    private static final String EXTERNAL_PARAMETER_ENTITIES =
+            "http://xml.org/sax/features/external-parameter-entities";
+
+    private static final EntityResolver NO_ENTITIES = (publicId, systemId) -> {
+        throw new SAXException("Refusing to resolve entity with publicId(" + publicId
+                + ") and systemId (" + systemId + ")");
+    };
+
+    private static final ThreadLocal<XPathSupport> LOCAL =
+            ThreadLocal.withInitial(XPathSupport::new);
+
+    private final XPath xpath = XPathFactory.newInstance().newXPath();
+
+    private final Map<String, XPathExpression> expressions =
+            new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    private DocumentBuilder builder;
+
+    private XPathSupport() {
+    }
+
+    /**
+     * Returns the given expression compiled, for use on the current thread
+     * only.
+     */
+    static XPathExpression compile(String expression) throws XPathExpressionException {
+        XPathSupport local = LOCAL.get();
+        XPathExpression compiled = local.expressions.get(expression);
+        if (compiled == null) {
+            compiled = local.xpath.compile(expression);
+            local.expressions.put(expression, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Parses the given stream into a document.
+     */
+    static Document parse(InputStream in) throws SAXException, IOException {
+        XPathSupport local = LOCAL.get();
+        DocumentBuilder builder = local.builder();
+        try {
+            return builder.parse(in);
+        } finally {
+            builder.reset();
+            builder.setEntityResolver(NO_ENTITIES);
+        }
+    }
+
+    private DocumentBuilder builder() throws SAXException {
+        if (builder == null) {
+            try {
+                builder = newDocumentBuilderFactory().newDocumentBuilder();
+            } catch (ParserConfigurationException e) {
+                throw new SAXException(e);
+            }
+            builder.setEntityResolver(NO_ENTITIES);
+        }
+        return builder;
+    }
+
+    private static DocumentBuilderFactory newDocumentBuilderFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setXIncludeAware(false);
+        factory.setExpandEntityReferences(false);
+        setFeature(factory, XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        setFeature(factory, EXTERNAL_GENERAL_ENTITIES, false);
+        setFeature(factory, EXTERNAL_PARAMETER_ENTITIES, false);
+        setFeature(factory, DISALLOW_DOCTYPE_DECL, true);
+        return factory;
+    }
+
+    private static void setFeature(DocumentBuilderFactory factory, String feature,
+                                   boolean value) {
+        try {
+            factory.setFeature(feature, value);
+        } catch (ParserConfigurationException e) {
+            LOGGER.log(Level.WARNING, "Failed to set the XML parser feature " + feature, e);
+        }
+    }
+}
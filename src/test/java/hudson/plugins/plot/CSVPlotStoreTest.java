@@ -0,0 +1,99 @@
+package hudson.plugins.plot;
+
+import hudson.model.FreeStyleProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CSVPlotStoreTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final CSVPlotStore store = new CSVPlotStore();
+
+    @Test
+    public void appendsWriteTheHeaderOnce() throws Exception {
+        Plot plot = createPlot();
+        store.append(plot, records(1, 1));
+        store.append(plot, records(2, 3));
+
+        List<String> lines = Files.readAllLines(store.getFile(plot).toPath(),
+                Charset.defaultCharset());
+        assertEquals(2 + 6, lines.size());
+        assertTrue(lines.get(0).contains("Title"));
+        PlotData data = store.read(plot, Integer.MIN_VALUE, Integer.MAX_VALUE, null);
+        assertEquals(6, data.size());
+        assertEquals(1, data.getBuildNumber(0));
+        assertEquals(3, data.getBuildNumber(5));
+        assertEquals(1, store.getOldestBuild(plot));
+    }
+
+    @Test
+    public void emptyAppendOnlyCreatesTheFile() throws Exception {
+        Plot plot = createPlot();
+        store.append(plot, new PlotData());
+        File file = store.getFile(plot);
+        long length = file.length();
+
+        store.append(plot, new PlotData());
+
+        assertEquals(length, file.length());
+        assertEquals(0, store.read(plot, Integer.MIN_VALUE, Integer.MAX_VALUE, null).size());
+        assertEquals(-1, store.getOldestBuild(plot));
+    }
+
+    @Test
+    public void readsSelectBuildsAndSeries() throws Exception {
+        Plot plot = createPlot();
+        store.append(plot, records(1, 5));
+
+        PlotData data = store.read(plot, 2, 3, Collections.singleton("first"));
+
+        assertEquals(2, data.size());
+        assertEquals(2, data.getBuildNumber(0));
+        assertEquals("first", data.getLabel(1));
+    }
+
+    @Test
+    public void retainDropsOtherBuilds() throws Exception {
+        Plot plot = createPlot();
+        store.append(plot, records(1, 5));
+
+        store.retain(plot, build -> build % 2 == 1);
+
+        PlotData data = store.read(plot, Integer.MIN_VALUE, Integer.MAX_VALUE, null);
+        assertEquals(6, data.size());
+        assertEquals(1, data.getBuildNumber(0));
+        assertEquals(3, data.getBuildNumber(2));
+        assertEquals(5, data.getBuildNumber(5));
+        // appends go on after the rewrite
+        store.append(plot, records(6, 6));
+        assertEquals(8, store.read(plot, Integer.MIN_VALUE, Integer.MAX_VALUE, null).size());
+    }
+
+    private Plot createPlot() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        Plot plot = new Plot("Title", "Number", "default", "", "store.csv",
+                "line", false, true, false, false, null, null, null);
+        plot.setJob(p);
+        return plot;
+    }
+
+    private static PlotData records(int fromBuild, int toBuild) {
+        PlotData records = new PlotData();
+        for (int build = fromBuild; build <= toBuild; build++) {
+            records.add(build, "first", build, build * 1000L, null);
+            records.add(build * 2, "second", build, build * 1000L, "http://host/" + build);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,139 @@
+package hudson.plugins.plot;
+
+import com.opencsv.CSVReader;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CSVTokenizerTest {
+    private static final String[] INPUTS = {
+            "a,b,c\n1,2,3\n",
+            "\"1.5\",\"label, with comma\",\"12\",\"1234567890123\",\"http://x/y\"\r\n",
+            "a,,c,\n\n,\n",
+            "no trailing newline",
+            "\"escaped \"\"quotes\"\"\",b\n",
+            "C:\\path\\to,\"C:\\quoted\\path\"\n",
+            "\"multi\nline\",next\r\nlast\r",
+            " \"leading space\",x\n",
+            "\"\",\"\"\"\",mid\"quote\n",
+            "1\r\r\n2\n"
+    };
+
+    @Test
+    public void readsRecordsLikeCSVReader() throws Exception {
+        for (String input : INPUTS) {
+            assertEquals(input, readWithCSVReader(input), readWithTokenizer(input));
+        }
+    }
+
+    @Test
+    public void readsLongLines() throws Exception {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            line.append(i).append(',');
+        }
+        String input = line + "\n" + line;
+        assertEquals(readWithCSVReader(input), readWithTokenizer(input));
+    }
+
+    @Test
+    public void parsesNumbersLikeTheJdk() throws Exception {
+        String[] numbers = {
+                "0", "-0", "1", "-1", "+7", "1.5", "-.5", ".5", "5.", "1e5", "1E-5", "1.5e+3",
+                "0.1", "0.30000000000000004", "123456789012345", "1234567890123456789",
+                "1e22", "1e23", "1e-22", "1e-400", "1e400", "4.9e-324", "00012.5000",
+                "NaN", "Infinity", "-Infinity", " 42 ", "0x1p3", "1d", "2f"
+        };
+        CSVTokenizer tokenizer = new CSVTokenizer(new StringReader(String.join(",", numbers)));
+        assertTrue(tokenizer.next());
+        for (int i = 0; i < numbers.length; i++) {
+            assertEquals(numbers[i], Double.parseDouble(numbers[i]), tokenizer.getDouble(i), 0);
+        }
+
+        String[] invalid = {"", "-", "e5", "1e", "1.2.3", "abc"};
+        tokenizer = new CSVTokenizer(new StringReader(String.join(",", invalid)));
+        assertTrue(tokenizer.next());
+        for (int i = 0; i < tokenizer.size(); i++) {
+            try {
+                tokenizer.getDouble(i);
+                fail(tokenizer.get(i));
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void parsesIntegersLikeTheJdk() throws Exception {
+        String[] numbers = {"0", "-0", "+12", "2147483647", "-2147483648", "123456789"};
+        CSVTokenizer tokenizer = new CSVTokenizer(new StringReader(String.join(",", numbers)));
+        assertTrue(tokenizer.next());
+        for (int i = 0; i < numbers.length; i++) {
+            assertEquals(Integer.parseInt(numbers[i]), tokenizer.getInt(i));
+            assertEquals(Long.parseLong(numbers[i]), tokenizer.getLong(i));
+        }
+        assertEquals(Long.MAX_VALUE, record(Long.toString(Long.MAX_VALUE)).getLong(0));
+
+        for (String invalid : new String[]{"+", "2147483648", "1.0", " 1"}) {
+            try {
+                record(invalid).getInt(0);
+                fail(invalid);
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void trimsFields() throws Exception {
+        CSVTokenizer tokenizer = new CSVTokenizer(new StringReader(" a ,\t, \"b\""));
+        assertTrue(tokenizer.next());
+        assertEquals("a", tokenizer.getTrimmed(0));
+        assertFalse(tokenizer.isBlank(0));
+        assertTrue(tokenizer.isBlank(1));
+        assertEquals("", tokenizer.getTrimmed(1));
+        assertFalse(tokenizer.next());
+    }
+
+    @Test(expected = IOException.class)
+    public void failsOnUnterminatedQuote() throws Exception {
+        CSVTokenizer tokenizer = new CSVTokenizer(new StringReader("a,\"b\nc"));
+        tokenizer.next();
+    }
+
+    private static List<List<String>> readWithCSVReader(String input) throws Exception {
+        List<List<String>> records = new ArrayList<>();
+        try (CSVReader reader = new CSVReader(new StringReader(input))) {
+            String[] record;
+            while ((record = reader.readNext()) != null) {
+                records.add(Arrays.asList(record));
+            }
+        }
+        return records;
+    }
+
+    private static List<List<String>> readWithTokenizer(String input) throws Exception {
+        List<List<String>> records = new ArrayList<>();
+        try (CSVTokenizer tokenizer = new CSVTokenizer(new StringReader(input))) {
+            while (tokenizer.next()) {
+                records.add(Arrays.asList(tokenizer.toArray()));
+            }
+        }
+        return records;
+    }
+
+    private static CSVTokenizer record(String text) throws IOException {
+        CSVTokenizer tokenizer = new CSVTokenizer(new StringReader(text));
+        assertTrue(tokenizer.next());
+        return tokenizer;
+    }
+}
@@ -0,0 +1,115 @@
+package hudson.plugins.plot;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ColumnarPlotFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendedRecordsAreReadBack() throws Exception {
+        File file = new File(folder.getRoot(), "plot.plot");
+        ColumnarPlotFile.append(file, records(1, 2));
+        PlotData texts = new PlotData();
+        texts.add("n/a", "third", 3, 3000L, null);
+        texts.add("3.0", "third", 3, 3000L, null);
+        ColumnarPlotFile.append(file, texts);
+
+        PlotData data = ColumnarPlotFile.read(file);
+        assertEquals(6, data.size());
+        assertEquals(1, data.getBuildNumber(0));
+        assertEquals("first", data.getLabel(0));
+        assertEquals(10.5, data.getValue(0), 0);
+        assertEquals(1000L, data.getTimestamp(0));
+        assertEquals("http://host/1", data.getUrl(0));
+        assertEquals(2, data.getBuildNumber(3));
+        assertNull(data.getUrl(3));
+        assertEquals("n/a", data.getValueString(4));
+        assertTrue(Double.isNaN(data.getValue(4)));
+        assertEquals(3.0, data.getValue(5), 0);
+        assertEquals("3.0", data.getValueString(5));
+        assertEquals(1, ColumnarPlotFile.firstBuildNumber(file));
+    }
+
+    @Test
+    public void writeReplacesTheRecords() throws Exception {
+        File file = new File(folder.getRoot(), "plot.plot");
+        ColumnarPlotFile.append(file, records(1, 3));
+        ColumnarPlotFile.write(file, records(3, 3));
+
+        PlotData data = ColumnarPlotFile.read(file);
+        assertEquals(2, data.size());
+        assertEquals(3, data.getBuildNumber(0));
+        assertEquals(3, ColumnarPlotFile.firstBuildNumber(file));
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void truncatedBlockIsDroppedByTheNextAppend() throws Exception {
+        File file = new File(folder.getRoot(), "plot.plot");
+        ColumnarPlotFile.append(file, records(1, 1));
+        long complete = file.length();
+        ColumnarPlotFile.append(file, records(2, 2));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 3);
+        }
+        assertEquals(2, ColumnarPlotFile.read(file).size());
+
+        try (FileChannel reader = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // a reader that mapped the file before the append keeps all of it
+            MappedByteBuffer mapped = reader.map(FileChannel.MapMode.READ_ONLY, 0,
+                    reader.size());
+            ColumnarPlotFile.append(file, records(3, 3));
+            while (mapped.hasRemaining()) {
+                mapped.get();
+            }
+        }
+
+        PlotData data = ColumnarPlotFile.read(file);
+        assertEquals(4, data.size());
+        assertEquals(1, data.getBuildNumber(0));
+        assertEquals(3, data.getBuildNumber(2));
+        assertTrue(file.length() > complete);
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void malformedBlockFailsWithIOException() throws Exception {
+        File file = new File(folder.getRoot(), "plot.plot");
+        ColumnarPlotFile.append(file, records(1, 1));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // claim more records than the block holds
+            raf.seek(8 + Integer.BYTES);
+            raf.writeInt(1000);
+        }
+        try {
+            ColumnarPlotFile.read(file);
+            fail("Malformed block was read");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static PlotData records(int fromBuild, int toBuild) {
+        PlotData records = new PlotData();
+        for (int build = fromBuild; build <= toBuild; build++) {
+            records.add(build + 9.5, "first", build, build * 1000L, "http://host/" + build);
+            records.add(build * 2, "second", build, build * 1000L, null);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,80 @@
+package hudson.plugins.plot;
+
+import hudson.model.FreeStyleProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarPlotStoreTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void csvDataIsMigratedOnFirstUse() throws Exception {
+        Plot plot = createPlot();
+        new CSVPlotStore().append(plot, records(1, 3));
+        ColumnarPlotStore store = new ColumnarPlotStore();
+
+        PlotData data = store.read(plot, Integer.MIN_VALUE, Integer.MAX_VALUE, null);
+
+        assertEquals(6, data.size());
+        assertTrue(new File(plot.getJob().getRootDir(), "plot.plot").exists());
+        assertEquals(1, store.getOldestBuild(plot));
+        store.append(plot, records(4, 4));
+        assertEquals(8, store.read(plot, Integer.MIN_VALUE, Integer.MAX_VALUE, null).size());
+        // the CSV file is left as it was
+        assertEquals(6, new CSVPlotStore()
+                .read(plot, Integer.MIN_VALUE, Integer.MAX_VALUE, null).size());
+    }
+
+    @Test
+    public void readsSelectBuildsAndSeries() throws Exception {
+        Plot plot = createPlot();
+        ColumnarPlotStore store = new ColumnarPlotStore();
+        store.append(plot, records(1, 2));
+        store.append(plot, records(3, 5));
+
+        PlotData data = store.read(plot, 2, 4, Collections.singleton("second"));
+
+        assertEquals(3, data.size());
+        for (int i = 0; i < data.size(); i++) {
+            assertEquals(i + 2, data.getBuildNumber(i));
+            assertEquals("second", data.getLabel(i));
+        }
+    }
+
+    @Test
+    public void retainDropsOtherBuilds() throws Exception {
+        Plot plot = createPlot();
+        ColumnarPlotStore store = new ColumnarPlotStore();
+        store.append(plot, records(1, 5));
+
+        store.retain(plot, build -> build > 3);
+
+        assertEquals(4, store.getOldestBuild(plot));
+        assertEquals(4, store.read(plot, Integer.MIN_VALUE, Integer.MAX_VALUE, null).size());
+    }
+
+    private Plot createPlot() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        Plot plot = new Plot("Title", "Number", "default", "", "plot.csv",
+                "line", false, true, false, false, null, null, null);
+        plot.setJob(p);
+        return plot;
+    }
+
+    private static PlotData records(int fromBuild, int toBuild) {
+        PlotData records = new PlotData();
+        for (int build = fromBuild; build <= toBuild; build++) {
+            records.add(build, "first", build, build * 1000L, null);
+            records.add(build * 2, "second", build, build * 1000L, null);
+        }
+        return records;
+    }
+}
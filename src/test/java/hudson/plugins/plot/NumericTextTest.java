@@ -0,0 +1,39 @@
+package hudson.plugins.plot;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertEquals;
+
+public class NumericTextTest {
+    private static final String[] TEXTS = {
+            "1", "-1", "+1", "1.5", "-.5", ".5", "5.", "1e5", "1E-5", "1.5e+3", "1e", "e5",
+            "1,234.56", "1.234,56", "NaN", "Infinity", "-Infinity", "0x1.8p1", "testOne",
+            "  42  ", "42 abc", "abc 42", "12a", "1.2.3", "+", "-", ".", "", "   ", "00012"
+    };
+
+    private final Locale defaultLocale = Locale.getDefault();
+
+    @After
+    public void restoreLocale() {
+        Locale.setDefault(defaultLocale);
+    }
+
+    @Test
+    public void readsNumbersLikeScanner() {
+        for (Locale locale : new Locale[]{Locale.US, Locale.GERMANY, Locale.FRANCE}) {
+            Locale.setDefault(locale);
+            for (String text : TEXTS) {
+                boolean isDouble = new Scanner(text).hasNextDouble();
+                assertEquals(locale + " [" + text + "]", isDouble, NumericText.isDouble(text));
+                if (isDouble) {
+                    assertEquals(locale + " [" + text + "]", new Scanner(text).nextDouble(),
+                            NumericText.parseDouble(text), 0);
+                }
+            }
+        }
+    }
+}
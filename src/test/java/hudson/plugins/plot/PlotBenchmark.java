@@ -0,0 +1,93 @@
+package hudson.plugins.plot;
+
+import hudson.model.FreeStyleProject;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.jfree.chart.ChartRenderingInfo;
+import org.jfree.chart.ChartUtilities;
+import org.jfree.chart.JFreeChart;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Measures reading, appending and rendering the data of a plot with a large
+ * history.
+ */
+@JmhBenchmark
+public class PlotBenchmark {
+    private static final int SERIES = 20;
+
+    private static final PlotRenderSpec SPEC = new PlotRenderSpec(750, 450, "",
+            Integer.MAX_VALUE, true, "Benchmark", "line", false);
+
+    @State(Scope.Benchmark)
+    public static class History extends JmhBenchmarkState {
+        /**
+         * The number of builds in the history of the plot.
+         */
+        @Param({"100", "10000"})
+        public int builds;
+
+        private Plot plot;
+        private int nextBuild;
+
+        @Override
+        public void setup() throws Exception {
+            FreeStyleProject project = getJenkins().createProject(FreeStyleProject.class,
+                    "history");
+            plot = new Plot("Benchmark", "value", "group", "", "history.csv", "line",
+                    false, false, false, false, null, null, null);
+            plot.setJob(project);
+            PlotData records = new PlotData();
+            for (int build = 1; build <= builds; build++) {
+                addBuild(records, build);
+            }
+            PlotStore.get().append(plot, records);
+        }
+
+        /**
+         * Drops the builds appended by the previous iteration, so that each
+         * one starts from the same history.
+         */
+        @Setup(Level.Iteration)
+        public void dropAppendedBuilds() throws IOException {
+            PlotStore.get().retain(plot, build -> build <= builds);
+            nextBuild = builds + 1;
+        }
+
+        private static void addBuild(PlotData records, int build) {
+            long timestamp = 1_500_000_000_000L + build * 60_000L;
+            for (int series = 0; series < SERIES; series++) {
+                records.add(build * 0.5 + series, "series" + series, build, timestamp,
+                        "http://localhost/" + build);
+            }
+        }
+    }
+
+    @Benchmark
+    public PlotData read(History history) {
+        return history.plot.readPlotData();
+    }
+
+    @Benchmark
+    public void append(History history) throws IOException {
+        PlotData records = new PlotData();
+        History.addBuild(records, history.nextBuild++);
+        PlotStore.get().append(history.plot, records);
+    }
+
+    @Benchmark
+    public byte[] render(History history) throws IOException {
+        JFreeChart chart = history.plot.generatePlot(SPEC);
+        BufferedImage image = chart.createBufferedImage(SPEC.getWidth(), SPEC.getHeight(),
+                new ChartRenderingInfo());
+        return ChartUtilities.encodeAsPNG(image);
+    }
+}
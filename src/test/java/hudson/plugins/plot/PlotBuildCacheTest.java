@@ -0,0 +1,51 @@
+package hudson.plugins.plot;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlotBuildCacheTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void onlyDescriptionChangesMakePlotsStale() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        FreeStyleBuild build = j.buildAndAssertSuccess(p);
+        build.setDescription("first");
+        assertEquals("first", PlotBuildCache.getDescription(p, build.getNumber()));
+        long generation = PlotImageCache.getGeneration(p);
+
+        build.save();
+        assertEquals(generation, PlotImageCache.getGeneration(p));
+
+        build.setDescription("second");
+        assertNotEquals(generation, PlotImageCache.getGeneration(p));
+        assertEquals("second", PlotBuildCache.getDescription(p, build.getNumber()));
+    }
+
+    @Test
+    public void deletedBuildsAndJobsAreForgotten() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("plotted");
+        FreeStyleBuild build = j.buildAndAssertSuccess(p);
+        assertTrue(PlotBuildCache.exists(p, build.getNumber()));
+        long generation = PlotImageCache.getGeneration(p);
+
+        build.delete();
+        assertFalse(PlotBuildCache.exists(p, build.getNumber()));
+        assertNotEquals(generation, PlotImageCache.getGeneration(p));
+
+        generation = PlotImageCache.getGeneration(p);
+        p.delete();
+        // a job created again with the same name doesn't reuse old generations
+        FreeStyleProject again = j.createFreeStyleProject("plotted");
+        assertNotEquals(generation, PlotImageCache.getGeneration(again));
+    }
+}
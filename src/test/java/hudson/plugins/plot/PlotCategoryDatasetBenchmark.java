@@ -0,0 +1,64 @@
+package hudson.plugins.plot;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures filling and clipping the dataset of a plot, as done for each
+ * rendered chart.
+ */
+@JmhBenchmark
+public class PlotCategoryDatasetBenchmark {
+    private static final int SERIES = 20;
+
+    @State(Scope.Benchmark)
+    public static class Columns {
+        /**
+         * The number of builds, that is of columns of the dataset.
+         */
+        @Param({"100", "10000", "50000"})
+        public int builds;
+
+        private Plot.Label[] labels;
+        private String[] series;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            labels = new Plot.Label[builds];
+            for (int build = 0; build < builds; build++) {
+                labels[build] = new Plot.Label(build + 1, 1_500_000_000_000L + build * 60_000L);
+            }
+            series = new String[SERIES];
+            for (int i = 0; i < SERIES; i++) {
+                series[i] = "series" + i;
+            }
+        }
+    }
+
+    @Benchmark
+    public PlotCategoryDataset setValue(Columns columns) {
+        return fill(columns);
+    }
+
+    @Benchmark
+    public PlotCategoryDataset clipDataset(Columns columns) {
+        PlotCategoryDataset dataset = fill(columns);
+        dataset.clipDataset(100);
+        return dataset;
+    }
+
+    private static PlotCategoryDataset fill(Columns columns) {
+        PlotCategoryDataset dataset = new PlotCategoryDataset(SERIES, columns.builds);
+        for (int build = 0; build < columns.builds; build++) {
+            for (int i = 0; i < SERIES; i++) {
+                dataset.setValue(build * 0.5 + i, null, columns.series[i], columns.labels[build]);
+            }
+        }
+        return dataset;
+    }
+}
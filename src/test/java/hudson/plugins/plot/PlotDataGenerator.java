@@ -0,0 +1,158 @@
+package hudson.plugins.plot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+/**
+ * Generates plot histories and series files of a given shape, with values
+ * that wander around a base value per series as real measurements do.
+ * <p>
+ * The same seed always produces the same data.
+ */
+public class PlotDataGenerator {
+    /**
+     * The number of builds written to the store at once.
+     */
+    private static final int BUILDS_PER_APPEND = 1000;
+
+    private static final long FIRST_TIMESTAMP = 1_500_000_000_000L;
+
+    private final int builds;
+    private final int series;
+    private final long seed;
+
+    /**
+     * @param builds the number of builds of the history
+     * @param series the number of series of the history and of the series
+     *               files
+     * @param seed   the seed of the generated values
+     */
+    public PlotDataGenerator(int builds, int series, long seed) {
+        this.builds = builds;
+        this.series = series;
+        this.seed = seed;
+    }
+
+    public int getBuilds() {
+        return builds;
+    }
+
+    public int getSeries() {
+        return series;
+    }
+
+    /**
+     * Returns the label of the given series.
+     */
+    public String label(int index) {
+        return "series" + index;
+    }
+
+    /**
+     * Returns the records of builds 1 to {@link #getBuilds()}, one per
+     * series and build.
+     */
+    public PlotData history() {
+        return history(1, builds, new Values());
+    }
+
+    /**
+     * Writes the history of builds 1 to {@link #getBuilds()} to the selected
+     * {@link PlotStore}, in chunks so that large histories don't have to fit
+     * in memory.
+     */
+    public void writeHistory(Plot plot) throws IOException {
+        Values values = new Values();
+        for (int from = 1; from <= builds; from += BUILDS_PER_APPEND) {
+            int to = Math.min(from + BUILDS_PER_APPEND - 1, builds);
+            PlotData records = history(from, to, values);
+            PlotStore.get().append(plot, records);
+        }
+    }
+
+    private PlotData history(int fromBuild, int toBuild, Values values) {
+        PlotData records = new PlotData();
+        for (int build = fromBuild; build <= toBuild; build++) {
+            long timestamp = FIRST_TIMESTAMP + build * 60_000L;
+            for (int i = 0; i < series; i++) {
+                records.add(values.next(i), label(i), build, timestamp,
+                        "http://localhost/" + build + "/" + i);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Writes a CSV series file with a header of {@link #getSeries()} labels
+     * followed by the given number of rows.
+     */
+    public void writeCsvSeries(File file, int rows) throws IOException {
+        Values values = new Values();
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            for (int i = 0; i < series; i++) {
+                out.print(i > 0 ? "," : "");
+                out.print(label(i));
+            }
+            out.println();
+            for (int row = 0; row < rows; row++) {
+                for (int i = 0; i < series; i++) {
+                    out.print(i > 0 ? "," : "");
+                    out.print(values.next(i));
+                }
+                out.println();
+            }
+        }
+    }
+
+    /**
+     * Writes an XML series file of <code>testcase</code> elements under a
+     * <code>results</code> root, with the series as <code>name</code>
+     * attribute and the value as <code>time</code> attribute. Each element
+     * takes about 60 bytes, so 20000 elements make a file of about a
+     * megabyte.
+     */
+    public void writeXmlSeries(File file, int elements) throws IOException {
+        Values values = new Values();
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            out.println("<results>");
+            for (int element = 0; element < elements; element++) {
+                int i = element % series;
+                out.println("  <testcase name=\"case" + i + "\" time=\"" + values.next(i)
+                        + "\"/>");
+            }
+            out.println("</results>");
+        }
+    }
+
+    /**
+     * Writes a properties series file with a single value.
+     */
+    public void writePropertiesSeries(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("YVALUE=" + new Values().next(0));
+        }
+    }
+
+    /**
+     * The values of each series: a random walk around a base value.
+     */
+    private final class Values {
+        private final Random random = new Random(seed);
+        private final double[] current = new double[series];
+
+        Values() {
+            for (int i = 0; i < series; i++) {
+                current[i] = 100 + random.nextInt(900);
+            }
+        }
+
+        double next(int index) {
+            current[index] = Math.max(0, current[index] + random.nextGaussian());
+            // keep the values short in the files
+            return Math.round(current[index] * 1000) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package hudson.plugins.plot;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PlotDataTest {
+    @Test
+    public void recordsGrowPastTheInitialCapacity() {
+        PlotData data = new PlotData(1);
+        for (int build = 1; build <= 100; build++) {
+            data.add(build * 1.5, "series" + build % 3, build, build * 1000L, null);
+        }
+
+        assertEquals(100, data.size());
+        assertEquals(100, data.getBuildNumber(99));
+        assertEquals(150.0, data.getValue(99), 0);
+        assertEquals(100000L, data.getTimestamp(99));
+        assertEquals("series1", data.getLabel(99));
+        assertNull(data.getUrl(99));
+    }
+
+    @Test
+    public void textValuesAreKept() {
+        PlotData data = new PlotData();
+        data.add("12", "numbers", 1, 0, "http://host/1");
+        data.add("0.25", "numbers", 1, 0, null);
+        data.add("n/a", "texts", 1, 0, null);
+        data.add("NaN", "texts", 1, 0, null);
+        data.add("3.0", "notations", 1, 0, null);
+        data.add("1e5", "notations", 1, 0, null);
+        data.add("0.10", "notations", 1, 0, null);
+        data.add("-0.0", "notations", 1, 0, null);
+
+        assertEquals(12.0, data.getValue(0), 0);
+        assertEquals("12", data.getValueString(0));
+        assertEquals("0.25", data.getValueString(1));
+        assertTrue(Double.isNaN(data.getValue(2)));
+        assertEquals("n/a", data.getValueString(2));
+        assertEquals("NaN", data.getValueString(3));
+        assertEquals(3.0, data.getValue(4), 0);
+        assertEquals("3.0", data.getValueString(4));
+        assertEquals(1e5, data.getValue(5), 0);
+        assertEquals("1e5", data.getValueString(5));
+        assertEquals("0.10", data.getValueString(6));
+        assertEquals("-0.0", data.getValueString(7));
+        assertArrayEquals(new String[]{"12", "numbers", "1", "0", "http://host/1"},
+                data.toRecord(0));
+    }
+
+    @Test
+    public void selectionKeepsRecordsAndTexts() {
+        PlotData data = new PlotData();
+        for (int build = 1; build <= 5; build++) {
+            data.add(Integer.toString(build), "numbers", build, build, null);
+            data.add("text" + build, "texts", build, build, "http://host/" + build);
+        }
+
+        PlotData selection = data.select(2, 4, Collections.singleton("texts"));
+
+        assertEquals(3, selection.size());
+        for (int i = 0; i < selection.size(); i++) {
+            assertEquals(i + 2, selection.getBuildNumber(i));
+            assertEquals("texts", selection.getLabel(i));
+            assertEquals("text" + (i + 2), selection.getValueString(i));
+            assertEquals("http://host/" + (i + 2), selection.getUrl(i));
+        }
+        assertEquals(10, data.select(Integer.MIN_VALUE, Integer.MAX_VALUE, null).size());
+    }
+
+    @Test
+    public void addAllAppendsTheOtherRecords() {
+        PlotData first = new PlotData();
+        first.add(1, "a", 1, 1, null);
+        PlotData second = new PlotData();
+        second.add("x", "b", 2, 2, "url");
+        second.add(3, "a", 2, 2, null);
+
+        first.addAll(second);
+
+        assertEquals(3, first.size());
+        assertEquals("x", first.getValueString(1));
+        assertEquals("b", first.getLabel(1));
+        assertEquals("url", first.getUrl(1));
+        assertEquals("3", first.getValueString(2));
+    }
+}
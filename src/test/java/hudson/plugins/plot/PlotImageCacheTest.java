@@ -0,0 +1,70 @@
+package hudson.plugins.plot;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PlotImageCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() {
+        PlotImageCache cache = new PlotImageCache(10);
+        cache.put("a", new byte[4], "image/png");
+        cache.put("b", new byte[4], "image/png");
+        assertNotNull(cache.get("a"));
+        cache.put("c", new byte[4], "image/png");
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(8, cache.size());
+    }
+
+    @Test
+    public void doesNotCacheOversizedContent() {
+        PlotImageCache cache = new PlotImageCache(10);
+        PlotImageCache.Entry entry = cache.put("a", new byte[11], "image/png");
+
+        assertNotNull(entry);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void replacesEntryWithSameKey() {
+        PlotImageCache cache = new PlotImageCache(10);
+        cache.put("a", new byte[4], "image/png");
+        PlotImageCache.Entry entry = cache.put("a", new byte[6], "image/png");
+
+        assertSame(entry, cache.get("a"));
+        assertEquals(6, cache.size());
+    }
+
+    @Test
+    public void etagDependsOnContent() {
+        PlotImageCache cache = new PlotImageCache(100);
+        String first = cache.put("a", new byte[]{1}, "image/png").getEtag();
+        String second = cache.put("b", new byte[]{1}, "image/png").getEtag();
+        String third = cache.put("c", new byte[]{2}, "image/png").getEtag();
+
+        assertEquals(first, second);
+        assertNotEquals(first, third);
+        assertTrue(first.startsWith("\"") && first.endsWith("\""));
+    }
+
+    @Test
+    public void matchesIfNoneMatchHeader() {
+        assertFalse(PlotImageCache.matches(null, "\"abc\""));
+        assertTrue(PlotImageCache.matches("\"abc\"", "\"abc\""));
+        assertTrue(PlotImageCache.matches("\"xyz\", \"abc\"", "\"abc\""));
+        assertTrue(PlotImageCache.matches("W/\"abc\"", "\"abc\""));
+        assertTrue(PlotImageCache.matches("*", "\"abc\""));
+        assertFalse(PlotImageCache.matches("\"xyz\"", "\"abc\""));
+    }
+}
@@ -0,0 +1,103 @@
+package hudson.plugins.plot;
+
+import hudson.model.FreeStyleProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlotRecordQueueTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void queuedRecordsAreWrittenInOrder() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        Plot plot = new Plot("Title", "Number", "default", "", "queued.csv",
+                "line", false, true, false, false, null, null, null);
+        plot.setJob(p);
+
+        for (int build = 1; build <= 20; build++) {
+            PlotData records = new PlotData();
+            records.add(build, "first", build, build * 1000L, null);
+            records.add(build * 2, "second", build, build * 1000L, null);
+            PlotRecordQueue.enqueue(plot, build, records);
+        }
+        PlotRecordQueue.flush();
+        assertEquals(0, queuedFiles().length);
+
+        PlotData data = plot.readPlotData();
+        assertEquals(40, data.size());
+        for (int i = 0; i < data.size(); i++) {
+            assertEquals(i / 2 + 1, data.getBuildNumber(i));
+            assertEquals(i % 2 == 0 ? "first" : "second", data.getLabel(i));
+        }
+    }
+
+    @Test
+    public void failedFilesAreAppliedOnceOnRetry() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        Plot plot = new Plot("Title", "Number", "default", "", "retried.csv",
+                "line", false, true, false, false, null, null, null);
+        plot.setJob(p);
+        // the plot file can't be written while a directory stands in its way
+        File plotFile = new File(p.getRootDir(), "retried.csv");
+        assertTrue(plotFile.mkdir());
+
+        PlotRecordQueue.enqueue(plot, 1, records(1));
+        PlotRecordQueue.enqueue(plot, 2, records(2));
+        PlotRecordQueue.flush();
+        assertEquals(2, queuedFiles().length);
+
+        assertTrue(plotFile.delete());
+        PlotRecordQueue.schedule();
+        PlotRecordQueue.flush();
+
+        assertEquals(0, queuedFiles().length);
+        PlotData data = plot.readPlotData();
+        assertEquals(2, data.size());
+        assertEquals(1, data.getBuildNumber(0));
+        assertEquals(2, data.getBuildNumber(1));
+    }
+
+    @Test
+    public void recoveredFilesAlreadyWrittenAreSkipped() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        Plot plot = new Plot("Title", "Number", "default", "", "recovered.csv",
+                "line", false, true, false, false, null, null, null);
+        plot.setJob(p);
+        File plotFile = new File(p.getRootDir(), "recovered.csv");
+        assertTrue(plotFile.mkdir());
+        PlotRecordQueue.enqueue(plot, 1, records(1));
+        PlotRecordQueue.enqueue(plot, 2, records(2));
+        PlotRecordQueue.flush();
+
+        // as if build 1 had been written right before a restart
+        assertTrue(plotFile.delete());
+        PlotStore.get().append(plot, records(1));
+        PlotRecordQueue.recover();
+        PlotRecordQueue.flush();
+
+        assertEquals(0, queuedFiles().length);
+        PlotData data = plot.readPlotData();
+        assertEquals(2, data.size());
+        assertEquals(1, data.getBuildNumber(0));
+        assertEquals(2, data.getBuildNumber(1));
+    }
+
+    private static PlotData records(int build) {
+        PlotData records = new PlotData();
+        records.add(build, "first", build, build * 1000L, null);
+        return records;
+    }
+
+    private String[] queuedFiles() {
+        File directory = new File(j.jenkins.getRootDir(), "plot-queue");
+        String[] files = directory.list((dir, name) -> name.endsWith(".csv"));
+        return files != null ? files : new String[0];
+    }
+}
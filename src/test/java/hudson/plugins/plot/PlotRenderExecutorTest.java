@@ -0,0 +1,105 @@
+package hudson.plugins.plot;
+
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import hudson.model.FreeStyleProject;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class PlotRenderExecutorTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void coalescesRendersInFlight() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger renders = new AtomicInteger();
+        PlotImageCache.Entry[] result = new PlotImageCache.Entry[]{
+                new PlotImageCache.Entry(new byte[]{1}, "image/png")
+        };
+
+        CompletableFuture<PlotImageCache.Entry[]> first =
+                PlotRenderExecutor.submit("coalesce", () -> {
+                    renders.incrementAndGet();
+                    release.await();
+                    return result;
+                });
+        CompletableFuture<PlotImageCache.Entry[]> second =
+                PlotRenderExecutor.submit("coalesce", () -> {
+                    renders.incrementAndGet();
+                    return result;
+                });
+        release.countDown();
+
+        assertSame(first, second);
+        assertSame(result, second.get(10, TimeUnit.SECONDS));
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    public void rendersAgainOnceCompleted() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        CompletableFuture<PlotImageCache.Entry[]> first =
+                PlotRenderExecutor.submit("sequential", () -> {
+                    renders.incrementAndGet();
+                    return new PlotImageCache.Entry[0];
+                });
+        first.get(10, TimeUnit.SECONDS);
+        CompletableFuture<PlotImageCache.Entry[]> second =
+                PlotRenderExecutor.submit("sequential", () -> {
+                    renders.incrementAndGet();
+                    return new PlotImageCache.Entry[0];
+                });
+        second.get(10, TimeUnit.SECONDS);
+
+        assertNotSame(first, second);
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    public void fullQueueIsRejectedWithRetryAfter() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        PlotPublisher publisher = new PlotPublisher();
+        publisher.addPlot(new Plot("Title", "Number", "default", "", "queue.csv", "line",
+                false, true, false, false, null, null, null));
+        p.getPublishersList().add(publisher);
+
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<PlotImageCache.Entry[]>> busy = new ArrayList<>();
+        try {
+            for (int i = 0; i < PlotRenderExecutor.THREADS + PlotRenderExecutor.QUEUE_SIZE;
+                    i++) {
+                busy.add(PlotRenderExecutor.submit("busy" + i, () -> {
+                    release.await();
+                    return new PlotImageCache.Entry[0];
+                }));
+            }
+            JenkinsRule.WebClient wc = j.createWebClient();
+            wc.setThrowExceptionOnFailingStatusCode(false);
+            WebResponse response = wc.getPage(new WebRequest(
+                    new URL(j.getURL(), p.getUrl() + "plot/getPlot?index=0")))
+                    .getWebResponse();
+
+            assertEquals(503, response.getStatusCode());
+            assertEquals(Integer.toString(PlotRenderExecutor.RETRY_AFTER),
+                    response.getResponseHeaderValue("Retry-After"));
+        } finally {
+            release.countDown();
+        }
+        for (CompletableFuture<PlotImageCache.Entry[]> future : busy) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package hudson.plugins.plot;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class PlotRenderSpecTest {
+    @Test
+    public void separatorsInTextDoNotShareKeys() {
+        PlotRenderSpec first = new PlotRenderSpec(750, 450, "10", Integer.MAX_VALUE, true,
+                "y", "line|x", false);
+        PlotRenderSpec second = new PlotRenderSpec(750, 450, "10", Integer.MAX_VALUE, true,
+                "x|y", "line", false);
+
+        assertNotEquals(first.getCacheKey(), second.getCacheKey());
+    }
+
+    @Test
+    public void nullIsNotTheTextNull() {
+        PlotRenderSpec first = new PlotRenderSpec(750, 450, "10", Integer.MAX_VALUE, true,
+                null, "line", false);
+        PlotRenderSpec second = new PlotRenderSpec(750, 450, "10", Integer.MAX_VALUE, true,
+                "null", "line", false);
+
+        assertNotEquals(first.getCacheKey(), second.getCacheKey());
+    }
+
+    @Test
+    public void equalSpecsShareKeys() {
+        PlotRenderSpec first = new PlotRenderSpec(750, 450, "10", 5, false, "Title", "line",
+                true);
+        PlotRenderSpec second = new PlotRenderSpec(750, 450, "10", 5, false, "Title", "line",
+                true);
+
+        assertEquals(first.getCacheKey(), second.getCacheKey());
+    }
+}
@@ -0,0 +1,126 @@
+package hudson.plugins.plot;
+
+import hudson.FilePath;
+import hudson.model.FreeStyleProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that recording a build, opening the plot report and rendering a
+ * chart stay within time and heap ceilings for a plot with a large history.
+ * <p>
+ * The defaults keep the test short; production sizes can be checked with
+ * system properties named after this class, for example
+ * <code>-Dhudson.plugins.plot.PlotScaleTest.builds=50000
+ * -Dhudson.plugins.plot.PlotScaleTest.series=500</code>. The ceilings are
+ * <code>maxMillis</code> and <code>maxRetainedMegabytes</code>, the growth of
+ * the heap in use after garbage collection.
+ */
+public class PlotScaleTest {
+    private static final Logger LOGGER = Logger.getLogger(PlotScaleTest.class.getName());
+
+    private static final String PREFIX = PlotScaleTest.class.getName() + ".";
+
+    private static final int BUILDS = Integer.getInteger(PREFIX + "builds", 2000);
+
+    private static final int SERIES = Integer.getInteger(PREFIX + "series", 20);
+
+    private static final int XML_ELEMENTS = Integer.getInteger(PREFIX + "xmlElements", 50000);
+
+    private static final long MAX_MILLIS = Long.getLong(PREFIX + "maxMillis", 30000);
+
+    private static final long MAX_RETAINED_MEGABYTES =
+            Long.getLong(PREFIX + "maxRetainedMegabytes", 256);
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final PlotDataGenerator generator = new PlotDataGenerator(BUILDS, SERIES, 42);
+
+    @Test
+    public void recordingABuildScales() throws Exception {
+        FreeStyleProject p = projectWithLargePlot();
+
+        assertWithinCeilings("recording a build", () -> j.buildAndAssertSuccess(p));
+    }
+
+    @Test
+    public void openingThePlotReportScales() throws Exception {
+        FreeStyleProject p = projectWithLargePlot();
+        JenkinsRule.WebClient wc = j.createWebClient();
+        wc.getOptions().setJavaScriptEnabled(false);
+
+        assertWithinCeilings("opening the plot report", () -> wc.getPage(p, "plot"));
+    }
+
+    @Test
+    public void renderingAChartScales() throws Exception {
+        FreeStyleProject p = projectWithLargePlot();
+        JenkinsRule.WebClient wc = j.createWebClient();
+
+        assertWithinCeilings("rendering a chart",
+                () -> wc.goTo(p.getUrl() + "plot/getPlot?index=0", "image/png"));
+    }
+
+    /**
+     * Creates a project whose plot already has the generated history, and
+     * whose workspace holds a CSV series file and a large XML series file.
+     */
+    private FreeStyleProject projectWithLargePlot() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        Plot plot = new Plot("Scale", "Value", "default", "", "scale.csv", "line", false,
+                true, false, false, null, null, null);
+        plot.series = Arrays.<Series>asList(
+                new CSVSeries("series.csv", null, "OFF", null, true),
+                new XMLSeries("series.xml", "/results/testcase", "NODESET", null));
+        PlotPublisher publisher = new PlotPublisher();
+        publisher.addPlot(plot);
+        p.getPublishersList().add(publisher);
+        plot.setJob(p);
+
+        generator.writeHistory(plot);
+        p.updateNextBuildNumber(generator.getBuilds() + 1);
+
+        FilePath workspace = j.jenkins.getWorkspaceFor(p);
+        workspace.mkdirs();
+        generator.writeCsvSeries(new File(workspace.getRemote(), "series.csv"), 1);
+        generator.writeXmlSeries(new File(workspace.getRemote(), "series.xml"), XML_ELEMENTS);
+        return p;
+    }
+
+    private static void assertWithinCeilings(String operation, Operation body)
+            throws Exception {
+        long heapBefore = usedHeapAfterGc();
+        long start = System.nanoTime();
+        body.run();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long retainedMegabytes = (usedHeapAfterGc() - heapBefore) / (1024 * 1024);
+        LOGGER.info(operation + " with " + BUILDS + " builds and " + SERIES + " series took "
+                + millis + " ms and retained " + retainedMegabytes + " MB");
+
+        assertTrue(operation + " took " + millis + " ms, more than " + MAX_MILLIS,
+                millis <= MAX_MILLIS);
+        assertTrue(operation + " retained " + retainedMegabytes + " MB, more than "
+                + MAX_RETAINED_MEGABYTES, retainedMegabytes <= MAX_RETAINED_MEGABYTES);
+    }
+
+    private static long usedHeapAfterGc() {
+        // a single collection may leave garbage behind, such as objects with finalizers
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,67 @@
+package hudson.plugins.plot;
+
+import hudson.ExtensionList;
+import hudson.model.FreeStyleProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PlotStoreTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void csvStoreIsSelectedByDefault() {
+        assertEquals(CSVPlotStore.ID, PlotStore.get().getId());
+        assertNotNull(ExtensionList.lookup(PlotStore.class).stream()
+                .filter(store -> ColumnarPlotStore.ID.equals(store.getId()))
+                .findFirst().orElse(null));
+    }
+
+    @Test
+    public void dataFilesAndLocksFollowThePlot() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        Plot plot = new Plot("Title", "Number", "default", "", "plot-1.csv",
+                "line", false, true, false, false, null, null, null);
+        plot.setJob(p);
+        Plot same = new Plot("Other", "Number", "default", "", "plot-1.csv",
+                "line", false, true, false, false, null, null, null);
+        same.setJob(p);
+
+        assertEquals(new File(p.getRootDir(), "plot-1.plot"),
+                new ColumnarPlotStore().getDataFile(plot, ".plot"));
+        assertEquals(p.getFullName() + "/plot-1.csv", PlotStore.getKey(plot));
+        assertSame(PlotStore.getLock(plot), PlotStore.getLock(same));
+    }
+
+    @Test
+    public void versionChangesWithinOneModificationTimeTick() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        Plot plot = new Plot("Title", "Number", "default", "", "version.csv",
+                "line", false, true, false, false, null, null, null);
+        plot.setJob(p);
+        CSVPlotStore store = new CSVPlotStore();
+        PlotData records = new PlotData();
+        records.add(1, "series", 1, 0, null);
+        store.append(plot, records);
+        File file = store.getFile(plot);
+        assertTrue(file.setLastModified(1_000_000_000L));
+        long version = store.getVersion(plot);
+
+        store.append(plot, records);
+        assertTrue(file.setLastModified(1_000_000_000L));
+        long appended = store.getVersion(plot);
+        PlotStore.changed(plot);
+
+        assertNotEquals(version, appended);
+        assertNotEquals(appended, store.getVersion(plot));
+    }
+}
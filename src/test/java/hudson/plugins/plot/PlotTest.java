@@ -34,14 +34,21 @@ import hudson.model.BuildListener;
 import hudson.model.FreeStyleProject;
 import hudson.tasks.Builder;
 import hudson.tasks.LogRotator;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class PlotTest {
 
@@ -167,6 +174,98 @@ public class PlotTest {
         assertSampleCount(c, 3); // Data should be kept
     }
 
+    @Test
+    public void keepPlotSamplesOfConcurrentBuilds() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        Plot plot = new Plot("Title", "Number", "default", "", "concurrent.csv",
+                "line", false, true, false, false, null, null, null);
+        plot.setJob(p);
+
+        int threads = 8;
+        int buildsPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int firstBuild = t * buildsPerThread + 1;
+                futures.add(executor.submit(() -> {
+                    for (int build = firstBuild; build < firstBuild + buildsPerThread; build++) {
+                        PlotData records = new PlotData();
+                        records.add(build, "series", build, 0, null);
+                        PlotAppendQueue.append(plot, records);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals("Plot sample count", threads * buildsPerThread,
+                plot.readPlotData().size());
+    }
+
+    @Test
+    public void compactOnceAfterFirstLoad() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        Plot plot = new Plot("Title", "Number", "default", "", "compacted.csv",
+                "line", false, true, false, false, null, null, null);
+        plot.setJob(p);
+        PlotData records = new PlotData();
+        records.add(1, "series", 1, 0, null);
+        PlotStore.get().append(plot, records);
+        PlotRenderSpec spec = new PlotRenderSpec(750, 450, "", Integer.MAX_VALUE, true,
+                "Title", "line", false);
+
+        plot.generatePlot(spec);
+        assertTrue(PlotCompactor.isScheduled(plot));
+
+        PlotCompactor.compact();
+        plot.generatePlot(spec);
+        assertFalse(PlotCompactor.isScheduled(plot));
+    }
+
+    @Test
+    public void compactionWithoutDroppedRecordsKeepsThePlotFile() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        Plot plot = new Plot("Title", "Number", "default", "", "kept.csv",
+                "line", false, true, false, false, null, null, null);
+        plot.setJob(p);
+        PlotData records = new PlotData();
+        records.add(1, "series", 1, 0, null);
+        PlotStore.get().append(plot, records);
+        File file = new CSVPlotStore().getFile(plot);
+        assertTrue(file.setLastModified(1_000_000_000L));
+
+        plot.compactPlotData();
+
+        assertEquals(1_000_000_000L, file.lastModified());
+        assertEquals(1, plot.readPlotData().size());
+    }
+
+    @Test
+    public void datasetIsSizedForTheBuildsShown() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject();
+        p.updateNextBuildNumber(101);
+        Plot plot = new Plot("Title", "Number", "default", "10", "shown.csv",
+                "line", false, true, false, false, null, null, null);
+        plot.setJob(p);
+        PlotData records = new PlotData();
+        for (int build = 1; build <= 100; build++) {
+            records.add(build, "first", build, build, null);
+            records.add(build, "second", build, build, null);
+        }
+
+        assertEquals(10, plot.shownBuilds(records, Integer.MAX_VALUE, Integer.MAX_VALUE));
+        assertEquals(5, plot.shownBuilds(records, 95, Integer.MAX_VALUE));
+        assertEquals(3, plot.shownBuilds(records, Integer.MAX_VALUE, 3));
+        assertEquals(0, plot.shownBuilds(records, 50, Integer.MAX_VALUE));
+        assertEquals(0, plot.shownBuilds(new PlotData(), Integer.MAX_VALUE, 3));
+    }
+
     private FreeStyleProject jobArchivingBuilds(int count) throws Exception {
         FreeStyleProject p = j.createFreeStyleProject();
         p.getBuildersList().add(new PlotBuildNumber());
@@ -0,0 +1,107 @@
+package hudson.plugins.plot;
+
+import hudson.FilePath;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Measures the parsing of series files of several sizes.
+ */
+@JmhBenchmark
+public class SeriesBenchmark {
+    private static final int COLUMNS = 20;
+
+    @State(Scope.Benchmark)
+    public static class Workspace {
+        /**
+         * The number of rows of the CSV file, elements of the XML file and
+         * properties files.
+         */
+        @Param({"10", "1000", "100000"})
+        public int size;
+
+        private File dir;
+        private FilePath root;
+        private final PrintStream logger = new PrintStream(NullOutputStream.NULL_OUTPUT_STREAM);
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            dir = Files.createTempDirectory("plot-benchmark").toFile();
+            root = new FilePath(dir);
+
+            try (PrintWriter csv = new PrintWriter(new File(dir, "series.csv"), "UTF-8")) {
+                for (int column = 0; column < COLUMNS; column++) {
+                    csv.print(column > 0 ? ",column" + column : "column" + column);
+                }
+                csv.println();
+                for (int row = 0; row < size; row++) {
+                    for (int column = 0; column < COLUMNS; column++) {
+                        csv.print(column > 0 ? "," : "");
+                        csv.print(row * 0.25 + column);
+                    }
+                    csv.println();
+                }
+            }
+
+            try (PrintWriter xml = new PrintWriter(new File(dir, "series.xml"), "UTF-8")) {
+                xml.println("<results>");
+                for (int i = 0; i < size; i++) {
+                    xml.println("  <testcase name=\"test" + i + "\" time=\"" + i * 0.25 + "\"/>");
+                }
+                xml.println("</results>");
+            }
+
+            // properties files hold one value each, so the size is the number of files
+            for (int i = 0; i < Math.min(size, 1000); i++) {
+                FileUtils.writeStringToFile(new File(dir, "series" + i + ".properties"),
+                        "YVALUE=" + i + "\n", StandardCharsets.UTF_8);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Benchmark
+    public List<PlotPoint> csv(Workspace workspace) {
+        return new CSVSeries("series.csv", null, "OFF", null, false)
+                .parseSeries(workspace.root, 1, workspace.logger);
+    }
+
+    @Benchmark
+    public List<PlotPoint> xmlStreamed(Workspace workspace) {
+        return new XMLSeries("series.xml", "/results/testcase", "NODESET", null)
+                .parseSeries(workspace.root, 1, workspace.logger);
+    }
+
+    @Benchmark
+    public List<PlotPoint> xmlDom(Workspace workspace) {
+        // a predicate on the value keeps this expression off the streaming path
+        return new XMLSeries("series.xml", "/results/testcase[@time >= 0]", "NODESET", null)
+                .parseSeries(workspace.root, 1, workspace.logger);
+    }
+
+    @Benchmark
+    public List<PlotPoint> properties(Workspace workspace) {
+        return new PropertiesSeries("series*.properties", "label")
+                .parseSeries(workspace.root, 1, workspace.logger);
+    }
+}
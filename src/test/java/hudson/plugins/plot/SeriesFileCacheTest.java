@@ -0,0 +1,60 @@
+package hudson.plugins.plot;
+
+import hudson.FilePath;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SeriesFileCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sharedFilesAreParsedOnceUntilReleased() throws Exception {
+        FilePath file = new FilePath(folder.newFile("results.csv"));
+        file.write("a,b\n1,2\n", "UTF-8");
+        SeriesFileCache cache = new SeriesFileCache();
+        cache.share(file.getRemote(), 2);
+
+        List<String[]> first = cache.getRows(file);
+        List<String[]> second = cache.getRows(file);
+        assertSame(first, second);
+        assertEquals(2, first.size());
+
+        // released after the registered uses
+        assertNotSame(second, cache.getRows(file));
+    }
+
+    @Test
+    public void changedFilesAreParsedAgain() throws Exception {
+        FilePath file = new FilePath(folder.newFile("results.xml"));
+        file.write("<results/>", "UTF-8");
+        SeriesFileCache cache = new SeriesFileCache();
+        cache.share(file.getRemote(), 3);
+
+        Document first = cache.getDocument(file);
+        assertSame(first, cache.getDocument(file));
+
+        file.write("<results><testcase/></results>", "UTF-8");
+        Document changed = cache.getDocument(file);
+        assertNotSame(first, changed);
+        assertEquals(1, changed.getElementsByTagName("testcase").getLength());
+    }
+
+    @Test
+    public void filesThatAreNotSharedAreNotKept() throws Exception {
+        FilePath file = new FilePath(folder.newFile("results.csv"));
+        file.write("a,b\n1,2\n", "UTF-8");
+        SeriesFileCache cache = new SeriesFileCache();
+        cache.share(file.getRemote(), 1);
+
+        assertNotSame(cache.getRows(file), cache.getRows(file));
+    }
+}
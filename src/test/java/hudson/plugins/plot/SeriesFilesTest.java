@@ -0,0 +1,62 @@
+package hudson.plugins.plot;
+
+import hudson.FilePath;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SeriesFilesTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void filesAreSortedByRelativePath() throws Exception {
+        FilePath workspace = new FilePath(folder.getRoot());
+        FilePath[] files = {
+                workspace.child("z.properties"),
+                workspace.child("m/b.properties"),
+                workspace.child("a.properties")
+        };
+
+        SeriesFiles.sort(workspace, files);
+
+        assertEquals("a.properties", SeriesFiles.relativePath(workspace, files[0]));
+        assertEquals("m/b.properties", SeriesFiles.relativePath(workspace, files[1]));
+        assertEquals("z.properties", SeriesFiles.relativePath(workspace, files[2]));
+    }
+
+    @Test
+    public void labelsOfSeveralFilesAreStable() throws Exception {
+        FilePath workspace = new FilePath(folder.getRoot());
+        // created out of order, so that a scan may list them in any order
+        workspace.child("z.properties").write("YVALUE=3", "UTF-8");
+        workspace.child("m/b.properties").write("YVALUE=2", "UTF-8");
+        workspace.child("a.properties").write("YVALUE=1", "UTF-8");
+        PropertiesSeries series = new PropertiesSeries("**/*.properties", "size");
+        List<String> expected = Arrays.asList("size", "size (m/b.properties)",
+                "size (z.properties)");
+
+        List<PlotPoint> scanned = WorkspaceScan.loadAll(workspace,
+                Collections.<Series>singletonList(series), 0, System.out).get(0);
+        List<PlotPoint> listed = series.parseSeries(workspace, 0, System.out);
+
+        assertEquals(expected, labels(scanned));
+        assertEquals(expected, labels(listed));
+        assertEquals("1", scanned.get(0).getYvalue());
+        assertEquals("3", listed.get(2).getYvalue());
+    }
+
+    private static List<String> labels(List<PlotPoint> points) {
+        String[] labels = new String[points.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = points.get(i).getLabel();
+        }
+        return Arrays.asList(labels);
+    }
+}
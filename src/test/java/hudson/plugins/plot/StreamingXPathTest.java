@@ -0,0 +1,75 @@
+package hudson.plugins.plot;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingXPathTest {
+    private static final String XML = "<suite>"
+            + "<case name='one' time='1.5'>x<b>y</b></case>"
+            + "<case name='two' time='2'/>"
+            + "<other name='three'/>"
+            + "</suite>";
+
+    @Test
+    public void leavesUnsupportedExpressionsToTheDom() {
+        assertNull(StreamingXPath.compile("count(//case)"));
+        assertNull(StreamingXPath.compile("/suite/case[1]"));
+        assertNull(StreamingXPath.compile("/suite/case/text()"));
+        assertNull(StreamingXPath.compile("//@name"));
+        assertNull(StreamingXPath.compile("suite/case"));
+        assertNotNull(StreamingXPath.compile("//case[@name='a/b'] | /suite/*/@time"));
+    }
+
+    @Test
+    public void selectsElementsInDocumentOrder() throws Exception {
+        List<StreamingXPath.Match> matches = evaluate("/suite/*[@name]", XML, false);
+        assertEquals(3, matches.size());
+        assertEquals("case", matches.get(0).getName());
+        assertEquals("xy", matches.get(0).getText());
+        assertEquals("1.5", matches.get(0).getAttribute("time"));
+        assertEquals("other", matches.get(2).getName());
+        assertEquals(matches.get(0).getParent(), matches.get(2).getParent());
+    }
+
+    @Test
+    public void selectsAttributesAfterTheirElement() throws Exception {
+        List<StreamingXPath.Match> matches =
+                evaluate("//case[@name='two'] | //case/@time", XML, false);
+        assertEquals(3, matches.size());
+        assertTrue(matches.get(0).isAttribute());
+        assertEquals("1.5", matches.get(0).getText());
+        assertFalse(matches.get(1).isAttribute());
+        assertEquals("two", matches.get(1).getAttribute("name"));
+        assertEquals("2", matches.get(2).getText());
+    }
+
+    @Test
+    public void stopsAfterTheFirstNode() throws Exception {
+        List<StreamingXPath.Match> matches = evaluate("//case", XML, true);
+        assertEquals(1, matches.size());
+        assertEquals("one", matches.get(0).getAttribute("name"));
+    }
+
+    @Test
+    public void leavesDocumentsWithDoctypeOrNamespacesToTheDom() throws Exception {
+        assertNull(evaluate("/a", "<!DOCTYPE a><a/>", false));
+        assertNull(evaluate("/a", "<a xmlns='urn:test'/>", false));
+    }
+
+    private static List<StreamingXPath.Match> evaluate(String xpath, String xml,
+                                                       boolean firstOnly) throws Exception {
+        try (InputStream in = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))) {
+            return StreamingXPath.compile(xpath).evaluate(in, firstOnly);
+        }
+    }
+}
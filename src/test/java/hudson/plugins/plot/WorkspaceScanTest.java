@@ -0,0 +1,137 @@
+package hudson.plugins.plot;
+
+import hudson.FilePath;
+import org.junit.Test;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WorkspaceScanTest extends SeriesTestCase {
+    @Test
+    public void eachSeriesGetsThePointsOfItsOwnFiles() {
+        List<Series> series = Arrays.asList(
+                new CSVSeries("test_multiple*.csv", null, "OFF", null, false),
+                new PropertiesSeries("test.properties", "testLabel"),
+                null,
+                new XMLSeries("test2.xml", "//UIAction/name|//UIAction/numCalls", "NODESET",
+                        null),
+                new CSVSeries("missing*.csv", null, "OFF", null, false),
+                new CSVSeries("test_multiple1.csv, test_multiple2.csv", null, "OFF", null,
+                        false));
+
+        List<List<PlotPoint>> points = WorkspaceScan.loadAll(workspaceRootDir, series, 0,
+                System.out);
+
+        assertEquals(series.size(), points.size());
+        for (int i = 0; i < series.size(); i++) {
+            if (series.get(i) == null) {
+                assertNull(points.get(i));
+                continue;
+            }
+            // as parsed after listing the files of the series alone
+            assertSamePoints(series.get(i).parseSeries(workspaceRootDir, 0, System.out),
+                    points.get(i));
+        }
+        testPlotPoints(points.get(0), 6);
+        testPlotPoints(points.get(1), 1);
+        testPlotPoints(points.get(3), 4);
+        assertNull(points.get(4));
+        testPlotPoints(points.get(5), 6);
+    }
+
+    @Test
+    public void seriesSharingFilesGetTheirOwnPoints() {
+        List<Series> series = Arrays.asList(
+                new CSVSeries("test.csv", null, "INCLUDE_BY_STRING", "Avg,Median", false),
+                new CSVSeries("test.csv", null, "EXCLUDE_BY_STRING", "Avg,Median", false),
+                new CSVSeries("test*.csv", null, "OFF", null, false),
+                new XMLSeries("test.xml", "//testcase[@name='testThree']", "NODE", null),
+                new XMLSeries("test.xml", "//testcase[@name='testOne']/@time", "STRING", null),
+                new XMLSeries("test2.xml", "//UIAction/name|//UIAction/numCalls", "NODESET",
+                        null),
+                new XMLSeries("test2.xml", "//UIAction/numCalls", "NODESET", null));
+
+        List<List<PlotPoint>> points = WorkspaceScan.loadAll(workspaceRootDir, series, 0,
+                System.out);
+
+        for (int i = 0; i < series.size(); i++) {
+            assertSamePoints(series.get(i).parseSeries(workspaceRootDir, 0, System.out),
+                    points.get(i));
+        }
+        testPlotPoints(points.get(0), 2);
+        testPlotPoints(points.get(1), 6);
+        testPlotPoints(points.get(3), 1);
+        testPlotPoints(points.get(5), 4);
+    }
+
+    @Test
+    public void seriesOverridingLoadSeriesLoadThemselves() {
+        List<Series> series = Arrays.asList(
+                new LegacySeries(),
+                new PropertiesSeries("test.properties", "testLabel"));
+
+        List<List<PlotPoint>> points = WorkspaceScan.loadAll(workspaceRootDir, series, 0,
+                System.out);
+
+        assertEquals(1, points.get(0).size());
+        assertEquals("legacy", points.get(0).get(0).getLabel());
+        testPlotPoints(points.get(1), 1);
+        assertTrue(series.get(0).loadsItself());
+        assertFalse(series.get(1).loadsItself());
+        // parsing on its own falls back to the series' loadSeries
+        assertEquals("legacy", series.get(0).parseSeries(workspaceRootDir, 0, System.out)
+                .get(0).getLabel());
+    }
+
+    @Test
+    public void seriesOverridingNeitherMethodHaveNoData() {
+        List<Series> series = Arrays.asList(
+                new Series("test.properties", "bare", "bare") {
+                    private static final long serialVersionUID = 1L;
+                },
+                new PropertiesSeries("test.properties", "testLabel"));
+
+        List<List<PlotPoint>> points = WorkspaceScan.loadAll(workspaceRootDir, series, 0,
+                System.out);
+
+        assertNull(points.get(0));
+        testPlotPoints(points.get(1), 1);
+    }
+
+    /**
+     * A series written against the API where subclasses implemented
+     * loadSeries.
+     */
+    private static final class LegacySeries extends Series {
+        private static final long serialVersionUID = 1L;
+
+        LegacySeries() {
+            super("legacy.txt", "legacy", "legacy");
+        }
+
+        @Override
+        public List<PlotPoint> loadSeries(FilePath workspaceRootDir, int buildNumber,
+                                          PrintStream logger) {
+            return Collections.singletonList(new PlotPoint("1", null, "legacy"));
+        }
+    }
+
+    private static void assertSamePoints(List<PlotPoint> expected, List<PlotPoint> actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getLabel(), actual.get(i).getLabel());
+            assertEquals(expected.get(i).getYvalue(), actual.get(i).getYvalue());
+        }
+    }
+}
@@ -113,6 +113,24 @@ public class XMLSeriesTest extends SeriesTestCase {
         testPlotPoints(points, 2);
     }
 
+    @Test
+    public void testXMLSeries_WhenSeveralFilesMatch_ThenPointsAreLabelledWithTheirFile() {
+        // test4.xml has a DOCTYPE and is skipped, the others have no results element;
+        // test.xml comes first by path and would keep its plain labels
+        String xpath = "/results/testcase/*";
+
+        XMLSeries series = new XMLSeries("test*.xml", xpath, "NODESET", null);
+
+        // load the series.
+        List<PlotPoint> points = series.loadSeries(workspaceRootDir, 0, System.out);
+        assertNotNull(points);
+        assertEquals(2, points.size());
+        assertEquals("one (test3.xml)", points.get(0).getLabel());
+        assertEquals("0.521", points.get(0).getYvalue());
+        assertEquals("two (test3.xml)", points.get(1).getLabel());
+        testPlotPoints(points, 2);
+    }
+
     @Test
     public void testXMLSeriesEmptyNodeset() {
         // Create a new XML series.